@@ -0,0 +1,97 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end benchmark of {@link ImageToPDFService#convertImagesToPDF}.
+ * <p>
+ * The {@code pages} counter is the throughput in pages per second and {@code outputBytes}
+ * the output rate; their ratio is the output size per page, which is also printed at the end
+ * of each trial. With {@code -prof gc}, {@code gc.alloc.rate.norm} divided by
+ * {@code batchSize} gives the allocated bytes per page.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConversionBenchmark {
+
+    @Param({"JPEG", "PNG", "PNG_ALPHA", "GIF", "BMP", "TIFF"})
+    public SyntheticCorpus.Format format;
+
+    @Param({"640x480", "2048x1536", "4000x3000"})
+    public String resolution;
+
+    @Param({"1", "16"})
+    public int batchSize;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private final ImageToPDFService service = new ImageToPDFService();
+    private SyntheticCorpus corpus;
+    private List<String> imagePaths;
+    private ConversionOptions options;
+    private long lastOutputSize;
+
+    /**
+     * Per-iteration counters reported next to the primary throughput score
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long pages;
+        public long outputBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            pages = 0;
+            outputBytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void generateCorpus() throws IOException {
+        corpus = new SyntheticCorpus();
+        imagePaths = corpus.generate(format, resolution, batchSize);
+        options = new ConversionOptions().setParallelism(parallelism);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteCorpus() throws IOException {
+        System.out.println();
+        System.out.println("Output size: " + lastOutputSize + " bytes, "
+                + (lastOutputSize / batchSize) + " bytes/page");
+        corpus.delete();
+    }
+
+    @Benchmark
+    public long convert(Counters counters) throws IOException {
+        CountingOutputStream output = new CountingOutputStream();
+        service.convertImagesToPDF(imagePaths, output, options);
+
+        lastOutputSize = output.getCount();
+        counters.pages += batchSize;
+        counters.outputBytes += output.getCount();
+        return output.getCount();
+    }
+}
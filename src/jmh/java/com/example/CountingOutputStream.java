@@ -0,0 +1,25 @@
+package com.example;
+
+import java.io.OutputStream;
+
+/**
+ * Discards written bytes and only counts them, so benchmarks measure encoding rather than disk I/O
+ */
+class CountingOutputStream extends OutputStream {
+
+    private long count;
+
+    @Override
+    public void write(int b) {
+        count++;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+        count += length;
+    }
+
+    long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the individual stages of a conversion for a single page,
+ * so every score is in pages per second.
+ * <ul>
+ *     <li>{@code decode} - plain ImageIO decode, the baseline cost passthrough paths avoid</li>
+ *     <li>{@code prepare} - the worker stage: load, decode if needed and encode</li>
+ *     <li>{@code createXObject} - copying prepared data into a document</li>
+ *     <li>{@code layoutPage} - XObject creation plus page sizing and drawing</li>
+ *     <li>{@code save} - serialising a one-page document</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StageBenchmark {
+
+    @Param({"JPEG", "PNG", "PNG_ALPHA", "GIF", "BMP", "TIFF"})
+    public SyntheticCorpus.Format format;
+
+    @Param({"640x480", "2048x1536", "4000x3000"})
+    public String resolution;
+
+    private final ImagePreparer imagePreparer = new ImagePreparer();
+    private final ImageToPDFService service = new ImageToPDFService();
+    private final ConversionOptions options = new ConversionOptions();
+    private SyntheticCorpus corpus;
+    private String imagePath;
+    private PreparedImage prepared;
+    private PDDocument savedDocument;
+
+    @Setup(Level.Trial)
+    public void generateCorpus() throws IOException {
+        corpus = new SyntheticCorpus();
+        imagePath = corpus.generate(format, resolution, 1).get(0);
+        prepared = imagePreparer.prepare(imagePath, options);
+
+        savedDocument = new PDDocument();
+        service.addImageToDocument(savedDocument, prepared);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteCorpus() throws IOException {
+        savedDocument.close();
+        corpus.delete();
+    }
+
+    /**
+     * Fresh document for stages that add to it, so documents do not grow across invocations
+     */
+    @State(Scope.Thread)
+    public static class TargetDocument {
+        PDDocument document;
+
+        @Setup(Level.Invocation)
+        public void open() {
+            document = new PDDocument();
+        }
+
+        @TearDown(Level.Invocation)
+        public void close() throws IOException {
+            document.close();
+        }
+    }
+
+    @Benchmark
+    public BufferedImage decode() throws IOException {
+        return ImageIO.read(new File(imagePath));
+    }
+
+    @Benchmark
+    public PreparedImage prepare() throws IOException {
+        return imagePreparer.prepare(imagePath, options);
+    }
+
+    @Benchmark
+    public PDImageXObject createXObject(TargetDocument target) throws IOException {
+        return prepared.toXObject(target.document);
+    }
+
+    @Benchmark
+    public int layoutPage(TargetDocument target) throws IOException {
+        service.addImageToDocument(target.document, prepared);
+        return target.document.getNumberOfPages();
+    }
+
+    @Benchmark
+    public long save() throws IOException {
+        CountingOutputStream output = new CountingOutputStream();
+        savedDocument.save(output);
+        return output.getCount();
+    }
+}
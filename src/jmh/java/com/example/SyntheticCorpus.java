@@ -0,0 +1,125 @@
+package com.example;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Generates benchmark images on the fly so no image files need to be checked in.
+ * Images mix gradients, shapes and noise so they compress roughly like photos and scans.
+ */
+public class SyntheticCorpus {
+
+    /**
+     * Image formats covered by the benchmarks
+     */
+    public enum Format {
+        JPEG("jpg", "jpg", false),
+        PNG("png", "png", false),
+        PNG_ALPHA("png", "png", true),
+        GIF("gif", "gif", false),
+        BMP("bmp", "bmp", false),
+        TIFF("tif", "tiff", false);
+
+        final String extension;
+        final String writerName;
+        final boolean alpha;
+
+        Format(String extension, String writerName, boolean alpha) {
+            this.extension = extension;
+            this.writerName = writerName;
+            this.alpha = alpha;
+        }
+    }
+
+    private final File directory;
+
+    public SyntheticCorpus() throws IOException {
+        this.directory = Files.createTempDirectory("pdf-bench-").toFile();
+    }
+
+    /**
+     * Writes {@code count} distinct images of the given format and size
+     * @param resolution size as WIDTHxHEIGHT, e.g. "2048x1536"
+     * @return paths of the generated files
+     */
+    public List<String> generate(Format format, String resolution, int count) throws IOException {
+        String[] size = resolution.toLowerCase().split("x");
+        int width = Integer.parseInt(size[0]);
+        int height = Integer.parseInt(size[1]);
+
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            BufferedImage image = createImage(width, height, format.alpha, i);
+            File file = new File(directory,
+                    format.name().toLowerCase() + "_" + resolution + "_" + i + "." + format.extension);
+            if (!ImageIO.write(image, format.writerName, file)) {
+                throw new IOException("No ImageIO writer for " + format);
+            }
+            paths.add(file.getAbsolutePath());
+        }
+        return paths;
+    }
+
+    private BufferedImage createImage(int width, int height, boolean alpha, long seed) {
+        BufferedImage image = new BufferedImage(width, height,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(seed);
+
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setPaint(new GradientPaint(0, 0, randomColor(random, 255),
+                width, height, randomColor(random, alpha ? 160 : 255)));
+        g.fillRect(0, 0, width, height);
+
+        for (int i = 0; i < 40; i++) {
+            g.setColor(randomColor(random, alpha ? 40 + random.nextInt(215) : 255));
+            int w = 1 + random.nextInt(Math.max(1, width / 3));
+            int h = 1 + random.nextInt(Math.max(1, height / 3));
+            g.fillOval(random.nextInt(width), random.nextInt(height), w, h);
+        }
+        g.dispose();
+
+        // Sensor-like noise so lossless encoders cannot compress the image to nothing
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x += 1 + random.nextInt(4)) {
+                int argb = image.getRGB(x, y);
+                int delta = random.nextInt(9) - 4;
+                int r = clamp(((argb >> 16) & 0xFF) + delta);
+                int gr = clamp(((argb >> 8) & 0xFF) + delta);
+                int b = clamp((argb & 0xFF) + delta);
+                image.setRGB(x, y, (argb & 0xFF000000) | (r << 16) | (gr << 8) | b);
+            }
+        }
+        return image;
+    }
+
+    private static Color randomColor(Random random, int alpha) {
+        return new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256), alpha);
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+
+    /**
+     * Deletes all generated files
+     */
+    public void delete() throws IOException {
+        try (Stream<Path> files = Files.walk(directory.toPath())) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how much memory concurrent conversions may claim at once.
+ * Each conversion reserves its estimated peak heap use before it starts and releases it when done;
+ * conversions that do not fit wait in arrival order, or are rejected if they never could fit.
+ */
+public class AdmissionController {
+
+    // Share of the maximum heap that conversions may reserve by default
+    private static final double DEFAULT_HEAP_SHARE = 0.6;
+
+    private static volatile AdmissionController defaultController;
+
+    // Permits are counted in KiB so large heaps fit in an int
+    private final Semaphore permits;
+    private final int capacityKiB;
+
+    /**
+     * A reservation that must be closed when the conversion ends
+     */
+    public final class Permit implements AutoCloseable {
+        private final int kiB;
+        private boolean released;
+
+        private Permit(int kiB) {
+            this.kiB = kiB;
+        }
+
+        /**
+         * Estimated bytes reserved for this conversion
+         */
+        public long getReservedBytes() {
+            return kiB * 1024L;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!released) {
+                released = true;
+                permits.release(kiB);
+            }
+        }
+    }
+
+    /**
+     * Thrown when a conversion cannot be admitted
+     */
+    public static class RejectedException extends IOException {
+        public RejectedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * @param capacityBytes Total estimated memory that admitted conversions may use together
+     */
+    public AdmissionController(long capacityBytes) {
+        this.capacityKiB = (int) Math.min(Integer.MAX_VALUE, Math.max(1, capacityBytes / 1024));
+        this.permits = new Semaphore(capacityKiB, true);
+    }
+
+    /**
+     * Controller shared by everything in this JVM, sized to a share of the maximum heap
+     */
+    public static AdmissionController getDefault() {
+        if (defaultController == null) {
+            synchronized (AdmissionController.class) {
+                if (defaultController == null) {
+                    long heap = Runtime.getRuntime().maxMemory();
+                    defaultController = new AdmissionController((long) (heap * DEFAULT_HEAP_SHARE));
+                }
+            }
+        }
+        return defaultController;
+    }
+
+    /**
+     * Estimates the peak heap use of a conversion from the image headers, without decoding any pixels.
+     * Counts the largest images that can be decoded at the same time, plus the encoded images the
+     * document holds, which is about the input size or the memory budget if one is set.
+     */
+    public static long estimateBytes(List<String> imagePaths, ConversionOptions options) throws IOException {
+        List<Long> decodeCosts = new ArrayList<>();
+        long inputBytes = 0;
+        for (String imagePath : imagePaths) {
+            decodeCosts.add(ImagePreparer.estimateDecodedBytes(imagePath, options));
+            inputBytes += new File(imagePath).length();
+        }
+
+        decodeCosts.sort(Collections.reverseOrder());
+        long concurrentDecode = 0;
+        for (int i = 0; i < Math.min(options.getParallelism(), decodeCosts.size()); i++) {
+            concurrentDecode += decodeCosts.get(i);
+        }
+
+        long documentBytes = options.getMemoryBudget() == ConversionOptions.UNLIMITED_MEMORY
+                ? inputBytes
+                : Math.min(inputBytes, options.getMemoryBudget());
+        return concurrentDecode + documentBytes;
+    }
+
+    /**
+     * Reserves memory for a conversion, waiting up to the timeout for running conversions to finish
+     * @throws RejectedException if the conversion is larger than the whole capacity or the wait times out
+     */
+    public Permit acquire(List<String> imagePaths, ConversionOptions options, long timeout, TimeUnit unit)
+            throws IOException {
+        long bytes = estimateBytes(imagePaths, options);
+        int kiB = (int) Math.max(1, Math.min(Integer.MAX_VALUE, (bytes + 1023) / 1024));
+        if (kiB > capacityKiB) {
+            throw new RejectedException("Conversion needs about " + (bytes >> 20)
+                    + " MB, more than the " + (capacityKiB >> 10) + " MB available");
+        }
+
+        try {
+            if (!permits.tryAcquire(kiB, timeout, unit)) {
+                throw new RejectedException("Server is busy, not enough memory for another conversion");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for memory");
+        }
+        return new Permit(kiB);
+    }
+
+    /**
+     * Estimated bytes currently free for new conversions
+     */
+    public long getAvailableBytes() {
+        return permits.availablePermits() * 1024L;
+    }
+
+    public long getCapacityBytes() {
+        return capacityKiB * 1024L;
+    }
+}
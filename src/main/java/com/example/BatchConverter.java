@@ -0,0 +1,502 @@
+package com.example;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Headless command line converter that turns many inputs into many PDFs at once.
+ * <ul>
+ *     <li>a directory becomes one PDF of its images, in name order</li>
+ *     <li>a glob pattern such as {@code scans/*.tif} becomes one PDF per matching directory</li>
+ *     <li>{@code @manifest.txt} lists jobs, one per line: the output name, then the images, separated by tabs;
+ *     relative image paths are resolved against the manifest's directory</li>
+ * </ul>
+ */
+public class BatchConverter {
+
+    private static final String[] SUPPORTED_FORMATS = {
+            ".jpg", ".jpeg", ".png", ".gif", ".bmp", ".tiff", ".tif"
+    };
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: Main [options] <directory | glob | @manifest>...",
+            "       Main watch --help for the hot-folder daemon",
+            "  -o, --output-dir DIR   where the PDFs are written (default: current directory)",
+            "  -j, --jobs N           PDFs converted at the same time (default: number of cores)",
+            "  -t, --threads N        image workers per PDF (default: cores / jobs)",
+            "  -r, --recursive        treat every subdirectory with images as its own PDF",
+            "      --per-image        write one PDF per image instead of per directory",
+            "      --skip-existing    leave PDFs that already exist untouched",
+            "      --dpi N            downsample images above N dpi",
+            "      --quality Q        JPEG quality 0-1 for downsampled photos (default: 0.85)",
+            "      --level N          Deflate level 0-9 for losslessly encoded images (default: 6)",
+            "      --memory-mb N      document memory budget per PDF before spilling to disk",
+            "      --no-dedup         do not share identical images within a PDF",
+            "A manifest has one PDF per line: the output name, then its images, separated by tabs.",
+            "Relative image paths are resolved against the manifest's directory.");
+
+    /**
+     * One output PDF and the images that go into it
+     */
+    static final class Job {
+        final File output;
+        final List<String> imagePaths;
+
+        Job(File output, List<String> imagePaths) {
+            this.output = output;
+            this.imagePaths = imagePaths;
+        }
+    }
+
+    /**
+     * Images collected for one output, before its file name is made unique
+     */
+    private static final class Group {
+        final String name;
+        final List<String> imagePaths = new ArrayList<>();
+
+        Group(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Outcome of one job
+     */
+    private static final class Result {
+        final Job job;
+        final int pages;
+        final long bytesIn;
+        final long bytesOut;
+        final long millis;
+        final Exception error;
+        final boolean skipped;
+
+        Result(Job job, int pages, long bytesIn, long bytesOut, long millis, Exception error, boolean skipped) {
+            this.job = job;
+            this.pages = pages;
+            this.bytesIn = bytesIn;
+            this.bytesOut = bytesOut;
+            this.millis = millis;
+            this.error = error;
+            this.skipped = skipped;
+        }
+    }
+
+    private final ImageToPDFService pdfService = new ImageToPDFService();
+
+    private File outputDirectory = new File(".");
+    private int jobs = Runtime.getRuntime().availableProcessors();
+    private int threads;
+    private boolean recursive;
+    private boolean perImage;
+    private boolean skipExisting;
+    private boolean helpRequested;
+    private final ConversionOptions options = new ConversionOptions();
+    private final List<String> inputs = new ArrayList<>();
+
+    /**
+     * Parses the arguments, runs every job and returns the process exit code:
+     * 0 when all jobs succeeded or help was printed, 1 when some failed, 2 for invalid arguments
+     */
+    public static int run(String[] args) {
+        BatchConverter converter = new BatchConverter();
+        List<Job> jobList;
+        try {
+            converter.parseArguments(args);
+            if (converter.helpRequested) {
+                System.out.println(USAGE);
+                return 0;
+            }
+            jobList = converter.collectJobs();
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+        if (jobList.isEmpty()) {
+            System.err.println("No images found in the given inputs");
+            return 2;
+        }
+        return converter.runJobs(jobList);
+    }
+
+    private void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "-o":
+                case "--output-dir":
+                    outputDirectory = new File(value(args, ++i, arg));
+                    break;
+                case "-j":
+                case "--jobs":
+                    jobs = positive(value(args, ++i, arg), arg);
+                    break;
+                case "-t":
+                case "--threads":
+                    threads = positive(value(args, ++i, arg), arg);
+                    break;
+                case "-r":
+                case "--recursive":
+                    recursive = true;
+                    break;
+                case "--per-image":
+                    perImage = true;
+                    break;
+                case "--skip-existing":
+                    skipExisting = true;
+                    break;
+                case "--dpi":
+                    options.setTargetDpi(positive(value(args, ++i, arg), arg));
+                    break;
+                case "--quality":
+                    try {
+                        options.setJpegQuality(Float.parseFloat(value(args, ++i, arg)));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid " + arg + ": " + args[i]);
+                    }
+                    break;
+                case "--level":
+                    try {
+                        options.setCompressionLevel(Integer.parseInt(value(args, ++i, arg)));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid " + arg + ": " + args[i]);
+                    }
+                    break;
+                case "--memory-mb":
+                    options.setMemoryBudget(positive(value(args, ++i, arg), arg) * 1024L * 1024L);
+                    break;
+                case "--no-dedup":
+                    options.setDeduplicate(false);
+                    break;
+                case "-h":
+                case "--help":
+                    helpRequested = true;
+                    return;
+                default:
+                    if (arg.startsWith("-")) {
+                        throw new IllegalArgumentException("Unknown option " + arg);
+                    }
+                    inputs.add(arg);
+            }
+        }
+
+        if (inputs.isEmpty()) {
+            throw new IllegalArgumentException("No inputs given");
+        }
+        // Cores are shared between concurrent PDFs unless a per-PDF thread count is given
+        int perJob = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / jobs);
+        options.setParallelism(perJob).setReadAhead(perJob * 2);
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException(option + " needs a value");
+        }
+        return args[index];
+    }
+
+    private static int positive(String value, String option) {
+        try {
+            int number = Integer.parseInt(value);
+            if (number > 0) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException(option + " must be a positive number: " + value);
+    }
+
+    /**
+     * Expands the inputs into jobs, giving each output a unique name
+     */
+    List<Job> collectJobs() throws IOException {
+        // Keyed by source directory, image or manifest line, in input order
+        Map<String, Group> groups = new LinkedHashMap<>();
+        for (String input : inputs) {
+            if (input.startsWith("@")) {
+                readManifest(Paths.get(input.substring(1)), groups);
+            } else if (isGlob(input)) {
+                for (Path image : expandGlob(input)) {
+                    addImage(image, groups);
+                }
+            } else {
+                Path path = Paths.get(input);
+                if (Files.isDirectory(path)) {
+                    addDirectory(path, groups);
+                } else if (Files.isRegularFile(path)) {
+                    addImage(path, groups);
+                } else {
+                    throw new IOException("Input not found: " + input);
+                }
+            }
+        }
+
+        List<Job> jobList = new ArrayList<>();
+        Set<String> usedNames = new HashSet<>();
+        for (Group group : groups.values()) {
+            String unique = group.name;
+            for (int n = 2; !usedNames.add(unique); n++) {
+                unique = group.name + "_" + n;
+            }
+            jobList.add(new Job(new File(outputDirectory, unique + ".pdf"), group.imagePaths));
+        }
+        return jobList;
+    }
+
+    private void addDirectory(Path directory, Map<String, Group> groups) throws IOException {
+        try (Stream<Path> entries = recursive ? Files.walk(directory) : Files.list(directory)) {
+            List<Path> images = entries.filter(Files::isRegularFile)
+                    .filter(BatchConverter::isImage)
+                    .sorted()
+                    .collect(Collectors.toList());
+            for (Path image : images) {
+                addImage(image, groups);
+            }
+        }
+    }
+
+    /**
+     * Puts an image into the job for its directory, or its own job in per-image mode
+     */
+    private void addImage(Path image, Map<String, Group> groups) {
+        Path absolute = image.toAbsolutePath().normalize();
+        Group group;
+        if (perImage) {
+            group = groups.computeIfAbsent(absolute.toString(),
+                    key -> new Group(baseName(image.getFileName().toString())));
+        } else {
+            Path parent = absolute.getParent();
+            group = groups.computeIfAbsent(parent.toString(),
+                    key -> new Group(parent.getFileName() != null ? parent.getFileName().toString() : "images"));
+        }
+        group.imagePaths.add(image.toString());
+    }
+
+    private static void readManifest(Path manifest, Map<String, Group> groups) throws IOException {
+        // Image paths are relative to the manifest, so it can be used from any working directory
+        Path base = manifest.toAbsolutePath().getParent();
+        try (BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\t");
+                if (fields.length < 2) {
+                    throw new IOException(manifest + ":" + lineNumber + ": expected an output name and images separated by tabs");
+                }
+                Group group = new Group(baseName(fields[0].trim()));
+                for (int i = 1; i < fields.length; i++) {
+                    if (!fields[i].trim().isEmpty()) {
+                        group.imagePaths.add(base.resolve(fields[i].trim()).toString());
+                    }
+                }
+                groups.put(manifest.toAbsolutePath() + ":" + lineNumber, group);
+            }
+        }
+    }
+
+    private static boolean isGlob(String input) {
+        return input.indexOf('*') >= 0 || input.indexOf('?') >= 0
+                || input.indexOf('[') >= 0 || input.indexOf('{') >= 0;
+    }
+
+    /**
+     * Lists the images matching a glob, searching from the deepest directory without wildcards
+     */
+    private static List<Path> expandGlob(String pattern) throws IOException {
+        String normalized = pattern.replace(File.separatorChar, '/');
+        int firstWildcard = normalized.length();
+        for (char c : new char[]{'*', '?', '[', '{'}) {
+            int index = normalized.indexOf(c);
+            if (index >= 0) {
+                firstWildcard = Math.min(firstWildcard, index);
+            }
+        }
+        int slash = normalized.lastIndexOf('/', firstWildcard);
+        Path root = slash >= 0 ? Paths.get(normalized.substring(0, slash + 1)) : Paths.get(".");
+        String relativePattern = slash >= 0 ? normalized.substring(slash + 1) : normalized;
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + relativePattern);
+
+        List<Path> matches = new ArrayList<>();
+        if (!relativePattern.contains("/") && !relativePattern.contains("**")) {
+            // Single level: a directory listing is much cheaper than a walk
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(root)) {
+                for (Path entry : entries) {
+                    if (matcher.matches(entry.getFileName()) && Files.isRegularFile(entry) && isImage(entry)) {
+                        matches.add(entry);
+                    }
+                }
+            }
+        } else {
+            try (Stream<Path> entries = Files.walk(root)) {
+                entries.filter(entry -> matcher.matches(root.relativize(entry)))
+                        .filter(Files::isRegularFile)
+                        .filter(BatchConverter::isImage)
+                        .forEach(matches::add);
+            }
+        }
+        Collections.sort(matches);
+        return matches;
+    }
+
+    private int runJobs(List<Job> jobList) {
+        try {
+            Files.createDirectories(outputDirectory.toPath());
+        } catch (IOException e) {
+            System.err.println("Error: cannot create " + outputDirectory + ": " + e.getMessage());
+            return 2;
+        }
+
+        int workers = Math.min(jobs, jobList.size());
+        System.out.println("Converting " + jobList.size() + " PDF(s) with " + workers + " job(s) of "
+                + options.getParallelism() + " thread(s) each");
+
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "batch-job-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<Result> completion = new ExecutorCompletionService<>(executor);
+        for (Job job : jobList) {
+            completion.submit(() -> convert(job));
+        }
+
+        long start = System.nanoTime();
+        int succeeded = 0;
+        int failed = 0;
+        int skipped = 0;
+        long pages = 0;
+        long bytesIn = 0;
+        long bytesOut = 0;
+        try {
+            for (int done = 1; done <= jobList.size(); done++) {
+                Result result = completion.take().get();
+                String progress = "[" + done + "/" + jobList.size() + "] ";
+                if (result.skipped) {
+                    skipped++;
+                    System.out.println(progress + result.job.output + ": exists, skipped");
+                } else if (result.error != null) {
+                    failed++;
+                    System.err.println(progress + result.job.output + ": FAILED - " + result.error.getMessage());
+                } else {
+                    succeeded++;
+                    pages += result.pages;
+                    bytesIn += result.bytesIn;
+                    bytesOut += result.bytesOut;
+                    System.out.println(progress + result.job.output + ": " + result.pages + " page(s), "
+                            + formatSize(result.bytesOut) + " in " + result.millis + " ms");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted");
+            return 1;
+        } catch (ExecutionException e) {
+            // convert() reports its own failures, so this is a bug
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        double seconds = Math.max(1e-3, (System.nanoTime() - start) / 1e9);
+        System.out.println(String.format(
+                "Done in %.1f s: %d converted, %d failed, %d skipped; %d page(s), %s in, %s out; "
+                        + "%.1f pages/s, %.1f MB/s",
+                seconds, succeeded, failed, skipped, pages, formatSize(bytesIn), formatSize(bytesOut),
+                pages / seconds, bytesIn / 1048576.0 / seconds));
+        return failed > 0 ? 1 : 0;
+    }
+
+    /**
+     * Converts one job into a temporary file that is renamed into place only when complete,
+     * so an interrupted run never leaves a truncated PDF behind
+     */
+    private Result convert(Job job) {
+        if (skipExisting && job.output.exists()) {
+            return new Result(job, 0, 0, 0, 0, null, true);
+        }
+
+        long start = System.nanoTime();
+        File partial = new File(job.output.getPath() + ".part");
+        try {
+            ConversionReport report;
+            AdmissionController.Permit permit = AdmissionController.getDefault()
+                    .acquire(job.imagePaths, options, Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(partial.toPath()))) {
+                report = pdfService.convertImagesToPDF(job.imagePaths, output, options);
+            } finally {
+                permit.close();
+            }
+            Files.move(partial.toPath(), job.output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+            long bytesIn = 0;
+            for (String imagePath : job.imagePaths) {
+                bytesIn += new File(imagePath).length();
+            }
+            return new Result(job, report.getEntries().size(), bytesIn, job.output.length(),
+                    (System.nanoTime() - start) / 1_000_000, null, false);
+        } catch (Exception e) {
+            partial.delete();
+            return new Result(job, 0, 0, 0, (System.nanoTime() - start) / 1_000_000, e, false);
+        }
+    }
+
+    private static boolean isImage(Path path) {
+        String name = path.getFileName().toString().toLowerCase();
+        for (String format : SUPPORTED_FORMATS) {
+            if (name.endsWith(format)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String baseName(String fileName) {
+        String name = new File(fileName).getName();
+        if (name.toLowerCase().endsWith(".pdf")) {
+            return name.substring(0, name.length() - 4);
+        }
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    private static String formatSize(long bytes) {
+        return bytes < 1024 * 1024
+                ? String.format("%.1f KB", bytes / 1024.0)
+                : String.format("%.1f MB", bytes / 1048576.0);
+    }
+}
@@ -0,0 +1,65 @@
+package com.example;
+
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Lets another thread stop a conversion, e.g. a cancel button or a disconnected client.
+ * A cancelled conversion stops preparing images, releases its document and fails with
+ * {@link CancelledException}.
+ */
+public class CancellationToken {
+
+    /**
+     * Thrown by a conversion that was cancelled
+     */
+    public static class CancelledException extends InterruptedIOException {
+        public CancelledException() {
+            super("Conversion cancelled");
+        }
+    }
+
+    private volatile boolean cancelled;
+    private final List<Runnable> callbacks = new CopyOnWriteArrayList<>();
+
+    /**
+     * Cancels the conversions using this token; calling it again has no effect
+     */
+    public void cancel() {
+        if (cancelled) {
+            return;
+        }
+        cancelled = true;
+        for (Runnable callback : callbacks) {
+            callback.run();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @throws CancelledException if the token was cancelled
+     */
+    public void throwIfCancelled() throws CancelledException {
+        if (cancelled) {
+            throw new CancelledException();
+        }
+    }
+
+    /**
+     * Runs the callback on the cancelling thread when the token is cancelled, or right away if it already is
+     */
+    void onCancel(Runnable callback) {
+        callbacks.add(callback);
+        if (cancelled) {
+            callback.run();
+        }
+    }
+
+    void removeOnCancel(Runnable callback) {
+        callbacks.remove(callback);
+    }
+}
@@ -0,0 +1,263 @@
+package com.example;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import java.awt.*;
+import java.io.File;
+import java.util.List;
+
+/**
+ * Dialog for shrinking a PDF by recompressing its images
+ */
+class CompressPDFDialog extends JDialog {
+
+    private JTextField pdfField;
+    private JTextField outputField;
+    private JSpinner dpiSpinner;
+    private JSpinner qualitySpinner;
+    private JCheckBox grayscaleCheckBox;
+    private JLabel statusLabel;
+    private JProgressBar progressBar;
+    private JButton convertButton;
+    // Token of the compression in progress, null when idle; the compress button cancels it
+    private CancellationToken activeConversion;
+
+    private static final Color PRIMARY_COLOR = new Color(243, 156, 18);
+    private static final Color BACKGROUND_COLOR = new Color(248, 249, 250);
+    private static final Color CARD_COLOR = Color.WHITE;
+    private static final Color TEXT_COLOR = new Color(52, 73, 94);
+    private static final Color LIGHT_TEXT_COLOR = new Color(127, 140, 141);
+
+    public CompressPDFDialog(Frame parent) {
+        super(parent, "Compress PDF", true);
+
+        initializeComponents();
+        setupLayout();
+
+        setSize(700, 480);
+        setLocationRelativeTo(parent);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+    }
+
+    private void initializeComponents() {
+        pdfField = new JTextField();
+        outputField = new JTextField();
+
+        dpiSpinner = new JSpinner(new SpinnerNumberModel(150, 36, 1200, 25));
+        qualitySpinner = new JSpinner(new SpinnerNumberModel(75, 10, 100, 5));
+        grayscaleCheckBox = new JCheckBox("Convert colour images to grayscale");
+        grayscaleCheckBox.setOpaque(false);
+
+        statusLabel = new JLabel("Choose a PDF to compress");
+        statusLabel.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        statusLabel.setForeground(TEXT_COLOR);
+
+        progressBar = new JProgressBar();
+        progressBar.setVisible(false);
+        progressBar.setStringPainted(true);
+
+        convertButton = new JButton("Compress PDF");
+        convertButton.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        convertButton.setBackground(PRIMARY_COLOR);
+        convertButton.setForeground(Color.WHITE);
+        convertButton.setBorder(new EmptyBorder(12, 30, 12, 30));
+        convertButton.setFocusPainted(false);
+        convertButton.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        convertButton.addActionListener(e -> convert());
+    }
+
+    private void setupLayout() {
+        setLayout(new BorderLayout());
+        getContentPane().setBackground(BACKGROUND_COLOR);
+
+        // Header
+        JPanel headerPanel = new JPanel(new BorderLayout());
+        headerPanel.setBackground(CARD_COLOR);
+        headerPanel.setBorder(new EmptyBorder(25, 30, 25, 30));
+
+        JLabel titleLabel = new JLabel("Compress PDF");
+        titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 20));
+        titleLabel.setForeground(TEXT_COLOR);
+
+        JLabel subtitleLabel = new JLabel("Downsample and re-encode images to make the file smaller");
+        subtitleLabel.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        subtitleLabel.setForeground(LIGHT_TEXT_COLOR);
+
+        headerPanel.add(titleLabel, BorderLayout.NORTH);
+        headerPanel.add(subtitleLabel, BorderLayout.SOUTH);
+
+        // Form
+        JPanel formPanel = new JPanel(new GridBagLayout());
+        formPanel.setOpaque(false);
+        formPanel.setBorder(new EmptyBorder(20, 30, 20, 30));
+        GridBagConstraints c = new GridBagConstraints();
+        c.insets = new Insets(6, 0, 6, 10);
+        c.fill = GridBagConstraints.HORIZONTAL;
+
+        JButton pdfButton = new JButton("Browse...");
+        pdfButton.addActionListener(e -> choosePdf());
+        JButton outputButton = new JButton("Browse...");
+        outputButton.addActionListener(e -> chooseOutputFile());
+
+        addRow(formPanel, c, 0, "PDF file:", pdfField, pdfButton);
+        addRow(formPanel, c, 1, "Output file:", outputField, outputButton);
+        addRow(formPanel, c, 2, "Image resolution (DPI):", dpiSpinner, null);
+        addRow(formPanel, c, 3, "JPEG quality (%):", qualitySpinner, null);
+        addRow(formPanel, c, 4, "", grayscaleCheckBox, null);
+
+        // Footer
+        JPanel footerPanel = new JPanel(new BorderLayout());
+        footerPanel.setBackground(CARD_COLOR);
+        footerPanel.setBorder(new EmptyBorder(20, 30, 20, 30));
+
+        JPanel statusPanel = new JPanel(new BorderLayout(15, 0));
+        statusPanel.setOpaque(false);
+        statusPanel.setBorder(new EmptyBorder(0, 0, 15, 0));
+        statusPanel.add(statusLabel, BorderLayout.WEST);
+        statusPanel.add(progressBar, BorderLayout.CENTER);
+
+        footerPanel.add(statusPanel, BorderLayout.NORTH);
+        footerPanel.add(convertButton, BorderLayout.SOUTH);
+
+        add(headerPanel, BorderLayout.NORTH);
+        add(formPanel, BorderLayout.CENTER);
+        add(footerPanel, BorderLayout.SOUTH);
+    }
+
+    private void addRow(JPanel panel, GridBagConstraints c, int row, String label, JComponent field, JButton button) {
+        JLabel rowLabel = new JLabel(label);
+        rowLabel.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        rowLabel.setForeground(TEXT_COLOR);
+
+        c.gridy = row;
+        c.gridx = 0;
+        c.weightx = 0;
+        panel.add(rowLabel, c);
+        c.gridx = 1;
+        c.weightx = 1;
+        panel.add(field, c);
+        if (button != null) {
+            c.gridx = 2;
+            c.weightx = 0;
+            panel.add(button, c);
+        }
+    }
+
+    private void choosePdf() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setFileFilter(new FileNameExtensionFilter("PDF files", "pdf"));
+        if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            File pdf = fileChooser.getSelectedFile();
+            pdfField.setText(pdf.getAbsolutePath());
+            if (outputField.getText().trim().isEmpty()) {
+                String name = pdf.getName().replaceFirst("(?i)\\.pdf$", "");
+                outputField.setText(new File(pdf.getParentFile(), name + "_compressed.pdf").getAbsolutePath());
+            }
+        }
+    }
+
+    private void chooseOutputFile() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setFileFilter(new FileNameExtensionFilter("PDF files", "pdf"));
+        if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+            String path = fileChooser.getSelectedFile().getAbsolutePath();
+            if (!path.toLowerCase().endsWith(".pdf")) {
+                path += ".pdf";
+            }
+            outputField.setText(path);
+        }
+    }
+
+    private void convert() {
+        if (activeConversion != null) {
+            activeConversion.cancel();
+            convertButton.setEnabled(false);
+            updateStatus("Cancelling...");
+            return;
+        }
+
+        String pdfPath = pdfField.getText().trim();
+        String outputPath = outputField.getText().trim();
+        if (pdfPath.isEmpty() || !new File(pdfPath).isFile() || outputPath.isEmpty()) {
+            JOptionPane.showMessageDialog(this,
+                    "Please choose an existing PDF and an output file.",
+                    "Missing Input",
+                    JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        ConversionOptions options = new ConversionOptions()
+                .setTargetDpi((Integer) dpiSpinner.getValue())
+                .setJpegQuality((Integer) qualitySpinner.getValue() / 100f);
+        boolean grayscale = grayscaleCheckBox.isSelected();
+        CancellationToken cancellation = new CancellationToken();
+        activeConversion = cancellation;
+        convertButton.setText("Cancel");
+        progressBar.setValue(0);
+        progressBar.setVisible(true);
+        updateStatus("Compressing images...");
+
+        SwingWorker<CompressionReport, Integer> worker = new SwingWorker<CompressionReport, Integer>() {
+            @Override
+            protected CompressionReport doInBackground() throws Exception {
+                ConversionListener listener = new ConversionListener() {
+                    @Override
+                    public void pageAdded(int pages, int totalImages, String imagePath) {
+                        publish(pages * 100 / totalImages);
+                    }
+                };
+                return new PDFCompressService(options).compressPDF(pdfPath, outputPath, grayscale, listener, cancellation);
+            }
+
+            @Override
+            protected void process(List<Integer> chunks) {
+                progressBar.setValue(chunks.get(chunks.size() - 1));
+            }
+
+            @Override
+            protected void done() {
+                activeConversion = null;
+                convertButton.setText("Compress PDF");
+                convertButton.setEnabled(true);
+                progressBar.setVisible(false);
+                if (cancellation.isCancelled()) {
+                    updateStatus("Compression cancelled");
+                    return;
+                }
+                try {
+                    CompressionReport report = get();
+                    long before = new File(pdfPath).length();
+                    long after = new File(outputPath).length();
+                    updateStatus(report.getRecompressedCount() + " of " + report.getEntries().size()
+                            + " image(s) recompressed");
+                    JOptionPane.showMessageDialog(CompressPDFDialog.this,
+                            String.format("Size reduced from %.1f MB to %.1f MB%nSaved to: %s",
+                                    before / 1048576.0, after / 1048576.0, outputPath),
+                            "Success",
+                            JOptionPane.INFORMATION_MESSAGE);
+                } catch (Exception e) {
+                    updateStatus("Error: " + e.getMessage());
+                    JOptionPane.showMessageDialog(CompressPDFDialog.this,
+                            "Error compressing PDF: " + e.getMessage(),
+                            "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+
+        worker.execute();
+    }
+
+    private void updateStatus(String message) {
+        statusLabel.setText(message);
+    }
+
+    @Override
+    public void dispose() {
+        if (activeConversion != null) {
+            activeConversion.cancel();
+        }
+        super.dispose();
+    }
+}
@@ -0,0 +1,116 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Summary of what a PDF compression did to each image
+ */
+public class CompressionReport {
+
+    /**
+     * Outcome for one image XObject
+     */
+    public static class Entry {
+        private final String image;
+        private final long originalBytes;
+        private final long compressedBytes;
+        private final boolean downsampled;
+        private final boolean grayscale;
+        private final String skipReason;
+
+        Entry(String image, long originalBytes, long compressedBytes, boolean downsampled, boolean grayscale,
+              String skipReason) {
+            this.image = image;
+            this.originalBytes = originalBytes;
+            this.compressedBytes = compressedBytes;
+            this.downsampled = downsampled;
+            this.grayscale = grayscale;
+            this.skipReason = skipReason;
+        }
+
+        /**
+         * Object reference and pixel size of the image in the source document
+         */
+        public String getImage() {
+            return image;
+        }
+
+        public long getOriginalBytes() {
+            return originalBytes;
+        }
+
+        /**
+         * Encoded size after compression, equal to the original size if the image was kept
+         */
+        public long getCompressedBytes() {
+            return compressedBytes;
+        }
+
+        public long getBytesSaved() {
+            return originalBytes - compressedBytes;
+        }
+
+        /**
+         * Whether the image was resampled to the target DPI at the largest size it is drawn
+         */
+        public boolean isDownsampled() {
+            return downsampled;
+        }
+
+        /**
+         * Whether the image was re-encoded with a single gray component
+         */
+        public boolean isGrayscale() {
+            return grayscale;
+        }
+
+        /**
+         * Why the image was left as it was, or null if it was re-encoded
+         */
+        public String getSkipReason() {
+            return skipReason;
+        }
+
+        @Override
+        public String toString() {
+            if (skipReason != null) {
+                return image + ": kept (" + skipReason + ")";
+            }
+            return image + ": " + originalBytes + " -> " + compressedBytes + " bytes"
+                    + (downsampled ? ", downsampled" : "") + (grayscale ? ", grayscale" : "");
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    void add(Entry entry) {
+        entries.add(entry);
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    public int getRecompressedCount() {
+        int count = 0;
+        for (Entry entry : entries) {
+            if (entry.skipReason == null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Total encoded image bytes removed from the document
+     */
+    public long getBytesSaved() {
+        long saved = 0;
+        for (Entry entry : entries) {
+            saved += entry.getBytesSaved();
+        }
+        return saved;
+    }
+}
@@ -0,0 +1,261 @@
+package com.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Runs conversions in the background on a bounded worker pool and keeps their results for a limited time.
+ * Submissions are rejected once the queue is full, so callers can shed load instead of piling up work.
+ */
+public class ConversionJobManager {
+
+    private static final String INPUT_PREFIX = "input_";
+
+    // A job's result, or the partial file it is written to first
+    private static final Pattern RESULT_NAME =
+            Pattern.compile("\\.?[0-9a-f]{8}(-[0-9a-f]{4}){3}-[0-9a-f]{12}\\.pdf(\\.part)?");
+
+    /**
+     * Lifecycle of a job
+     */
+    public enum Status {
+        QUEUED, RUNNING, DONE, FAILED
+    }
+
+    /**
+     * A submitted conversion and, once finished, its result
+     */
+    public static class Job {
+        private final String id;
+        private final List<String> imagePaths;
+        private final File inputDirectory;
+        private final File resultFile;
+        private volatile Status status = Status.QUEUED;
+        private volatile String error;
+        private volatile long finishedAt;
+
+        Job(String id, List<String> imagePaths, File inputDirectory, File resultFile) {
+            this.id = id;
+            this.imagePaths = imagePaths;
+            this.inputDirectory = inputDirectory;
+            this.resultFile = resultFile;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        /**
+         * The finished PDF; only valid once the status is {@link Status#DONE}
+         */
+        public File getResultFile() {
+            return resultFile;
+        }
+    }
+
+    private final ImageToPDFService pdfService;
+    private final ConversionOptions options;
+    private final File resultDirectory;
+    private final long resultTtlMillis;
+    private final int workers;
+
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService sweeper;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    // Moving average of job run time, used to suggest when a rejected client should retry
+    private volatile double averageJobMillis = 1000;
+
+    /**
+     * @param pdfService Service that performs the conversions
+     * @param options Options applied to every job
+     * @param resultDirectory Where finished PDFs are kept until they expire
+     * @param workers Number of conversions that run at the same time
+     * @param queueCapacity Number of jobs that may wait for a worker before submissions are rejected
+     * @param resultTtlMillis How long a finished job and its result are kept
+     */
+    public ConversionJobManager(ImageToPDFService pdfService, ConversionOptions options, File resultDirectory,
+                                int workers, int queueCapacity, long resultTtlMillis) throws IOException {
+        this.pdfService = pdfService;
+        this.options = options;
+        this.resultDirectory = resultDirectory;
+        this.resultTtlMillis = resultTtlMillis;
+        this.workers = workers;
+        Files.createDirectories(resultDirectory.toPath());
+        removeLeftovers();
+
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "conversion-job-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "conversion-job-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long sweepInterval = Math.max(1000, resultTtlMillis / 4);
+        sweeper.scheduleWithFixedDelay(this::removeExpiredJobs, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Deletes results and input directories of jobs from an earlier run, which can no longer be
+     * fetched. Only names this class creates are touched, in case the directory is shared.
+     */
+    private void removeLeftovers() {
+        File[] leftovers = resultDirectory.listFiles((dir, name) ->
+                name.startsWith(INPUT_PREFIX) || RESULT_NAME.matcher(name).matches());
+        if (leftovers == null) {
+            return;
+        }
+        for (File leftover : leftovers) {
+            if (leftover.isDirectory()) {
+                deleteDirectory(leftover);
+            } else {
+                leftover.delete();
+            }
+        }
+        if (leftovers.length > 0) {
+            System.out.println("Removed " + leftovers.length + " result(s) and input(s) left by an earlier run in "
+                    + resultDirectory);
+        }
+    }
+
+    /**
+     * Creates a directory to upload a job's input images into
+     */
+    public File createInputDirectory() throws IOException {
+        return Files.createTempDirectory(resultDirectory.toPath(), INPUT_PREFIX).toFile();
+    }
+
+    /**
+     * True when every worker is busy and the queue is full
+     */
+    public boolean isSaturated() {
+        return executor.getQueue().remainingCapacity() == 0
+                && executor.getActiveCount() >= workers;
+    }
+
+    /**
+     * Queues a conversion
+     * @param imagePaths Images to convert, in page order
+     * @param inputDirectory Directory holding the images; deleted when the job finishes
+     * @return the queued job
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public Job submit(List<String> imagePaths, File inputDirectory) {
+        String id = UUID.randomUUID().toString();
+        Job job = new Job(id, imagePaths, inputDirectory, new File(resultDirectory, id + ".pdf"));
+        jobs.put(id, job);
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(id);
+            throw e;
+        }
+        return job;
+    }
+
+    /**
+     * Looks up a job that has not yet expired
+     */
+    public Job getJob(String id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * Suggested number of seconds a rejected client should wait before submitting again
+     */
+    public int getRetryAfterSeconds() {
+        double queued = executor.getQueue().size() + 1;
+        return (int) Math.max(1, Math.ceil(averageJobMillis * queued / workers / 1000));
+    }
+
+    private void run(Job job) {
+        job.status = Status.RUNNING;
+        long start = System.currentTimeMillis();
+        // Jobs wait for memory rather than fail; the bounded queue already limits how many can wait
+        try {
+            AdmissionController.Permit permit = AdmissionController.getDefault()
+                    .acquire(job.imagePaths, options, Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            try {
+                pdfService.convertImagesToPDF(job.imagePaths, job.resultFile.getPath(), options);
+            } finally {
+                permit.close();
+            }
+            job.status = Status.DONE;
+        } catch (Exception e) {
+            job.error = e.getMessage();
+            job.status = Status.FAILED;
+            job.resultFile.delete();
+            e.printStackTrace();
+        } finally {
+            job.finishedAt = System.currentTimeMillis();
+            averageJobMillis = averageJobMillis * 0.8 + (job.finishedAt - start) * 0.2;
+            deleteDirectory(job.inputDirectory);
+        }
+    }
+
+    private void removeExpiredJobs() {
+        long now = System.currentTimeMillis();
+        jobs.values().removeIf(job -> {
+            boolean expired = job.finishedAt > 0 && now - job.finishedAt > resultTtlMillis;
+            if (expired) {
+                job.resultFile.delete();
+            }
+            return expired;
+        });
+    }
+
+    /**
+     * Deletes a job's flat input directory
+     */
+    static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * Stops accepting jobs, abandons queued ones and deletes all stored results
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+        sweeper.shutdownNow();
+        for (Job job : jobs.values()) {
+            job.resultFile.delete();
+            deleteDirectory(job.inputDirectory);
+        }
+        jobs.clear();
+    }
+}
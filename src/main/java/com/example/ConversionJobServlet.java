@@ -0,0 +1,306 @@
+package com.example;
+
+import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.fileupload.disk.DiskFileItemFactory;
+import org.apache.commons.fileupload.servlet.ServletFileUpload;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Servlet for asynchronous conversions of large uploads.
+ * <ul>
+ *     <li>{@code POST /jobs} - upload images, returns 202 with the job id, or 429 when busy</li>
+ *     <li>{@code GET /jobs/{id}} - job status as JSON</li>
+ *     <li>{@code GET /jobs/{id}/result} - download the PDF, with HTTP Range support</li>
+ * </ul>
+ */
+@WebServlet("/jobs/*")
+public class ConversionJobServlet extends HttpServlet {
+
+    private static final int MEMORY_THRESHOLD = 1024 * 1024 * 3; // 3MB
+    private static final int MAX_FILE_SIZE = 1024 * 1024 * 40; // 40MB
+    private static final int MAX_REQUEST_SIZE = 1024 * 1024 * 50; // 50MB
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+
+    private ConversionJobManager jobManager;
+
+    @Override
+    public void init() throws ServletException {
+        int workers = intParam("jobWorkers", Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        int queueCapacity = intParam("jobQueueCapacity", 16);
+        int ttlMinutes = intParam("resultTtlMinutes", 60);
+
+        String resultDirParam = getInitParameter("resultDirectory");
+        File resultDir = resultDirParam != null && !resultDirParam.trim().isEmpty()
+                ? new File(resultDirParam.trim())
+                : new File(System.getProperty("java.io.tmpdir"), "pdf-job-results");
+
+        // Conversions of different jobs already run side by side, so each gets a share of the cores
+        ConversionOptions options = new ConversionOptions()
+                .setParallelism(Math.max(1, Runtime.getRuntime().availableProcessors() / workers));
+        try {
+            jobManager = new ConversionJobManager(new ImageToPDFService(), options, resultDir,
+                    workers, queueCapacity, ttlMinutes * 60_000L);
+        } catch (IOException e) {
+            throw new ServletException("Cannot create result directory " + resultDir, e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        jobManager.shutdown();
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        if (!ServletFileUpload.isMultipartContent(request)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Form must have enctype=multipart/form-data.");
+            return;
+        }
+
+        // Turn clients away before reading a large body that could not be processed anyway
+        if (jobManager.isSaturated()) {
+            rejectBusy(response);
+            return;
+        }
+
+        DiskFileItemFactory factory = new DiskFileItemFactory();
+        factory.setSizeThreshold(MEMORY_THRESHOLD);
+        factory.setRepository(new File(System.getProperty("java.io.tmpdir")));
+
+        ServletFileUpload upload = new ServletFileUpload(factory);
+        upload.setFileSizeMax(MAX_FILE_SIZE);
+        upload.setSizeMax(MAX_REQUEST_SIZE);
+
+        File inputDir = jobManager.createInputDirectory();
+        List<String> imagePaths = new ArrayList<>();
+        ConversionJobManager.Job job = null;
+        try {
+            List<FileItem> formItems = upload.parseRequest(request);
+            for (FileItem item : formItems) {
+                if (!item.isFormField()) {
+                    String fileName = new File(item.getName()).getName();
+                    if (isValidImageFile(fileName)) {
+                        // Prefix with the index so files with the same name do not overwrite each other
+                        File storeFile = new File(inputDir, imagePaths.size() + "_" + fileName);
+                        item.write(storeFile);
+                        imagePaths.add(storeFile.getPath());
+                    }
+                }
+            }
+
+            if (imagePaths.isEmpty()) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "No valid image files were uploaded.");
+                return;
+            }
+
+            job = jobManager.submit(imagePaths, inputDir);
+        } catch (RejectedExecutionException e) {
+            rejectBusy(response);
+            return;
+        } catch (Exception ex) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Error: " + ex.getMessage());
+            ex.printStackTrace();
+            return;
+        } finally {
+            if (job == null) {
+                ConversionJobManager.deleteDirectory(inputDir);
+            }
+        }
+
+        response.setStatus(HttpServletResponse.SC_ACCEPTED);
+        response.setHeader("Location", request.getContextPath() + "/jobs/" + job.getId());
+        writeStatus(request, response, job);
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        String pathInfo = request.getPathInfo();
+        String[] parts = pathInfo == null ? new String[0] : pathInfo.substring(1).split("/");
+        ConversionJobManager.Job job = parts.length > 0 ? jobManager.getJob(parts[0]) : null;
+        if (job == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "Unknown or expired job");
+            return;
+        }
+
+        if (parts.length == 1) {
+            writeStatus(request, response, job);
+        } else if (parts.length == 2 && parts[1].equals("result")) {
+            if (job.getStatus() != ConversionJobManager.Status.DONE) {
+                response.sendError(HttpServletResponse.SC_CONFLICT, "Job is " + job.getStatus());
+                return;
+            }
+            sendResult(request, response, job);
+        } else {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+        }
+    }
+
+    private void rejectBusy(HttpServletResponse response) throws IOException {
+        response.setHeader("Retry-After", String.valueOf(jobManager.getRetryAfterSeconds()));
+        response.sendError(SC_TOO_MANY_REQUESTS, "Too many conversions in progress, retry later.");
+    }
+
+    private void writeStatus(HttpServletRequest request, HttpServletResponse response,
+                             ConversionJobManager.Job job) throws IOException {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"id\":\"").append(job.getId()).append('"');
+        json.append(",\"status\":\"").append(job.getStatus()).append('"');
+        if (job.getStatus() == ConversionJobManager.Status.DONE) {
+            json.append(",\"result\":\"").append(request.getContextPath())
+                    .append("/jobs/").append(job.getId()).append("/result\"");
+        }
+        if (job.getError() != null) {
+            json.append(",\"error\":\"").append(escapeJson(job.getError())).append('"');
+        }
+        json.append('}');
+
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-store");
+        response.getWriter().write(json.toString());
+    }
+
+    /**
+     * Sends the finished PDF, or the single byte range asked for in the Range header
+     */
+    private void sendResult(HttpServletRequest request, HttpServletResponse response,
+                            ConversionJobManager.Job job) throws IOException {
+        try (FileChannel source = FileChannel.open(job.getResultFile().toPath(), StandardOpenOption.READ)) {
+            long size = source.size();
+            long start = 0;
+            long end = size - 1;
+
+            String range = request.getHeader("Range");
+            if (range != null) {
+                long[] bounds = parseRange(range, size);
+                if (bounds == null) {
+                    response.setHeader("Content-Range", "bytes */" + size);
+                    response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                if (bounds.length == 2) {
+                    start = bounds[0];
+                    end = bounds[1];
+                    response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                    response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + size);
+                }
+            }
+
+            response.setContentType("application/pdf");
+            response.setHeader("Accept-Ranges", "bytes");
+            response.setHeader("Content-Disposition", "attachment; filename=\"converted_" + job.getId() + ".pdf\"");
+            response.setContentLengthLong(end - start + 1);
+
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position <= end) {
+                position += source.transferTo(position, end - position + 1, target);
+            }
+        }
+    }
+
+    /**
+     * Parses a single "bytes=" range. Ranges that are not valid syntax, such as one that ends before it
+     * starts, are ignored as RFC 7233 section 2.1 requires, and the whole file is sent.
+     * @return {start, end} for a satisfiable range, an empty array to send the whole file,
+     * or null if the range cannot be satisfied
+     */
+    static long[] parseRange(String header, long size) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            // Other units and multipart ranges are answered with the whole file
+            return new long[0];
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+
+        try {
+            long start;
+            long end;
+            if (dash == 0) {
+                // Suffix range: the last N bytes
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix < 0) {
+                    return new long[0];
+                }
+                if (suffix == 0) {
+                    return null;
+                }
+                start = Math.max(0, size - suffix);
+                end = size - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                if (dash == spec.length() - 1) {
+                    end = size - 1;
+                } else {
+                    end = Long.parseLong(spec.substring(dash + 1));
+                    if (end < start) {
+                        return new long[0];
+                    }
+                    end = Math.min(size - 1, end);
+                }
+            }
+            if (start >= size) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    private int intParam(String name, int defaultValue) throws ServletException {
+        String value = getInitParameter(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ServletException("Invalid " + name + ": " + value, e);
+        }
+    }
+
+    private static String escapeJson(String value) {
+        StringBuilder escaped = new StringBuilder();
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                escaped.append('\\').append(c);
+            } else if (c < 0x20) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private boolean isValidImageFile(String fileName) {
+        if (fileName == null) return false;
+        String lowerCase = fileName.toLowerCase();
+        return lowerCase.endsWith(".jpg") || lowerCase.endsWith(".jpeg") ||
+                lowerCase.endsWith(".png") || lowerCase.endsWith(".gif") ||
+                lowerCase.endsWith(".bmp") || lowerCase.endsWith(".tiff") ||
+                lowerCase.endsWith(".tif");
+    }
+}
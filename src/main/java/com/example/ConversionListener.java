@@ -0,0 +1,24 @@
+package com.example;
+
+/**
+ * Receives progress of a conversion. Methods are called on the thread that assembles the document,
+ * so implementations should return quickly and hand any UI updates to their own thread.
+ */
+public interface ConversionListener {
+
+    /**
+     * Called when the conversion moves on to another stage
+     */
+    default void stageStarted(ConversionMetrics.Stage stage) {
+    }
+
+    /**
+     * Called after each page is added
+     * @param pages Pages in the document so far
+     * @param totalImages Pages expected so far, one per image or per frame of a multi-frame image, or -1 if
+     *                    images are still being added
+     * @param imagePath Image on the new page
+     */
+    default void pageAdded(int pages, int totalImages, String imagePath) {
+    }
+}
@@ -0,0 +1,406 @@
+package com.example;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and stage timings for conversions in this JVM.
+ * Recording only touches striped adders, so it is cheap enough for the per-image hot path.
+ * The default instance is published over JMX and as text by {@link MetricsServlet}.
+ */
+public class ConversionMetrics implements ConversionMetricsMBean {
+
+    /**
+     * Timed steps of a conversion
+     */
+    public enum Stage {
+        /** Receiving and parsing the multipart request */
+        UPLOAD_PARSE,
+        /** Reading an image into pixels */
+        DECODE,
+        /** Compressing pixels for the PDF */
+        ENCODE,
+        /** Adding the image and its page to the document */
+        PAGE_LAYOUT,
+        /** Serializing the finished document */
+        SAVE,
+        /** Sending the PDF to the client, from a conversion or the result cache */
+        RESPONSE;
+
+        String label() {
+            return name().toLowerCase();
+        }
+    }
+
+    // Upper bounds of the latency histogram buckets, in milliseconds; the last bucket is unbounded
+    private static final long[] BUCKET_BOUNDS_MILLIS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000};
+
+    private static final String OBJECT_NAME = "com.example:type=ConversionMetrics";
+
+    private static volatile ConversionMetrics defaultMetrics;
+
+    /**
+     * JMX view of a {@link StageTimer}
+     */
+    public interface StageTimerMBean {
+        long getCount();
+
+        double getTotalMillis();
+
+        double getMeanMillis();
+
+        double getMaxMillis();
+
+        long getP50Millis();
+
+        long getP95Millis();
+
+        long getP99Millis();
+    }
+
+    /**
+     * Latency distribution of one stage
+     */
+    public static class StageTimer implements StageTimerMBean {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_MILLIS.length + 1];
+
+        StageTimer() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+
+            long millis = nanos / 1_000_000;
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS_MILLIS.length && millis >= BUCKET_BOUNDS_MILLIS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket].increment();
+        }
+
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+
+        @Override
+        public double getTotalMillis() {
+            return totalNanos.sum() / 1e6;
+        }
+
+        @Override
+        public double getMeanMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : totalNanos.sum() / 1e6 / n;
+        }
+
+        @Override
+        public double getMaxMillis() {
+            return maxNanos.get() / 1e6;
+        }
+
+        @Override
+        public long getP50Millis() {
+            return percentileMillis(0.50);
+        }
+
+        @Override
+        public long getP95Millis() {
+            return percentileMillis(0.95);
+        }
+
+        @Override
+        public long getP99Millis() {
+            return percentileMillis(0.99);
+        }
+
+        /**
+         * Upper bound of the bucket holding the given percentile, or the maximum for the unbounded bucket
+         */
+        long percentileMillis(double percentile) {
+            long[] counts = bucketCounts();
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            if (total == 0) {
+                return 0;
+            }
+
+            long rank = (long) Math.ceil(percentile * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_BOUNDS_MILLIS.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return BUCKET_BOUNDS_MILLIS[i];
+                }
+            }
+            return (long) Math.ceil(getMaxMillis());
+        }
+
+        long[] bucketCounts() {
+            long[] counts = new long[buckets.length];
+            for (int i = 0; i < buckets.length; i++) {
+                counts[i] = buckets[i].sum();
+            }
+            return counts;
+        }
+    }
+
+    private final Map<Stage, StageTimer> timers = new EnumMap<>(Stage.class);
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder pages = new LongAdder();
+    private final LongAdder conversions = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    public ConversionMetrics() {
+        for (Stage stage : Stage.values()) {
+            timers.put(stage, new StageTimer());
+        }
+    }
+
+    /**
+     * Metrics shared by every conversion in this JVM, registered with the platform MBean server on first use
+     */
+    public static ConversionMetrics getDefault() {
+        if (defaultMetrics == null) {
+            synchronized (ConversionMetrics.class) {
+                if (defaultMetrics == null) {
+                    ConversionMetrics metrics = new ConversionMetrics();
+                    metrics.register();
+                    defaultMetrics = metrics;
+                }
+            }
+        }
+        return defaultMetrics;
+    }
+
+    /**
+     * Registers the MBeans, replacing any left under the same names, e.g. by an earlier deployment
+     * of the webapp whose instance would otherwise keep being served
+     */
+    private void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            replace(server, name, this);
+            for (Stage stage : Stage.values()) {
+                replace(server, stageName(stage), timers.get(stage));
+            }
+        } catch (JMException e) {
+            // Metrics still work without JMX, e.g. through the metrics servlet
+            System.err.println("Could not register conversion metrics MBeans: " + e.getMessage());
+        }
+    }
+
+    private static void replace(MBeanServer server, ObjectName name, Object mbean) throws JMException {
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(mbean, name);
+    }
+
+    private static ObjectName stageName(Stage stage) throws JMException {
+        return new ObjectName(OBJECT_NAME + ",stage=" + stage.label());
+    }
+
+    /**
+     * Removes the default instance's MBeans, so JMX does not keep serving an undeployed webapp's
+     * counters and holding on to its classloader
+     */
+    public static synchronized void unregisterDefault() {
+        if (defaultMetrics == null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            List<ObjectName> names = new ArrayList<>();
+            names.add(new ObjectName(OBJECT_NAME));
+            for (Stage stage : Stage.values()) {
+                names.add(stageName(stage));
+            }
+            for (ObjectName name : names) {
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+            }
+        } catch (JMException e) {
+            System.err.println("Could not unregister conversion metrics MBeans: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Records how long a stage took
+     * @param startNanos Value of {@link System#nanoTime()} when the stage started
+     */
+    public void recordSince(Stage stage, long startNanos) {
+        timers.get(stage).record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records a stage duration measured by the caller, e.g. summed over several intervals
+     */
+    public void record(Stage stage, long nanos) {
+        timers.get(stage).record(nanos);
+    }
+
+    public StageTimer getTimer(Stage stage) {
+        return timers.get(stage);
+    }
+
+    void addBytesIn(long bytes) {
+        bytesIn.add(bytes);
+    }
+
+    void addBytesOut(long bytes) {
+        bytesOut.add(bytes);
+    }
+
+    void pageAdded() {
+        pages.increment();
+    }
+
+    void conversionStarted() {
+        conversions.increment();
+        inFlight.incrementAndGet();
+    }
+
+    void conversionFinished() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Counts a lookup in the result cache of the upload servlet
+     */
+    void cacheLookup(boolean hit) {
+        (hit ? cacheHits : cacheMisses).increment();
+    }
+
+    /**
+     * Counts a failure under the simple name of its exception class
+     */
+    public void recordError(Throwable error) {
+        errors.computeIfAbsent(error.getClass().getSimpleName(), type -> new LongAdder()).increment();
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    @Override
+    public long getPages() {
+        return pages.sum();
+    }
+
+    @Override
+    public long getConversions() {
+        return conversions.sum();
+    }
+
+    @Override
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    public long getErrors() {
+        long total = 0;
+        for (LongAdder count : errors.values()) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    /**
+     * Error counts by exception type, sorted by name
+     */
+    public Map<String, Long> getErrorsByType() {
+        Map<String, Long> counts = new TreeMap<>();
+        errors.forEach((type, count) -> counts.put(type, count.sum()));
+        return counts;
+    }
+
+    /**
+     * Writes every metric in the Prometheus text exposition format
+     */
+    public void writeText(StringBuilder out) {
+        out.append("# TYPE pdf_stage_seconds histogram\n");
+        for (Stage stage : Stage.values()) {
+            StageTimer timer = timers.get(stage);
+            String label = "stage=\"" + stage.label() + "\"";
+            long[] counts = timer.bucketCounts();
+            long cumulative = 0;
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i];
+                String le = i < BUCKET_BOUNDS_MILLIS.length
+                        ? String.valueOf(BUCKET_BOUNDS_MILLIS[i] / 1000.0)
+                        : "+Inf";
+                out.append("pdf_stage_seconds_bucket{").append(label).append(",le=\"").append(le).append("\"} ")
+                        .append(cumulative).append('\n');
+            }
+            out.append("pdf_stage_seconds_sum{").append(label).append("} ")
+                    .append(timer.getTotalMillis() / 1000.0).append('\n');
+            out.append("pdf_stage_seconds_count{").append(label).append("} ").append(cumulative).append('\n');
+        }
+
+        out.append("# TYPE pdf_bytes_in_total counter\n");
+        out.append("pdf_bytes_in_total ").append(getBytesIn()).append('\n');
+        out.append("# TYPE pdf_bytes_out_total counter\n");
+        out.append("pdf_bytes_out_total ").append(getBytesOut()).append('\n');
+        out.append("# TYPE pdf_pages_total counter\n");
+        out.append("pdf_pages_total ").append(getPages()).append('\n');
+        out.append("# TYPE pdf_conversions_total counter\n");
+        out.append("pdf_conversions_total ").append(getConversions()).append('\n');
+        out.append("# TYPE pdf_conversions_in_flight gauge\n");
+        out.append("pdf_conversions_in_flight ").append(getInFlight()).append('\n');
+        out.append("# TYPE pdf_cache_hits_total counter\n");
+        out.append("pdf_cache_hits_total ").append(getCacheHits()).append('\n');
+        out.append("# TYPE pdf_cache_misses_total counter\n");
+        out.append("pdf_cache_misses_total ").append(getCacheMisses()).append('\n');
+        out.append("# TYPE pdf_errors_total counter\n");
+        getErrorsByType().forEach((type, count) ->
+                out.append("pdf_errors_total{type=\"").append(type).append("\"} ").append(count).append('\n'));
+    }
+}
@@ -0,0 +1,23 @@
+package com.example;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Ties the conversion metrics MBeans to the lifetime of the webapp: they are registered when it
+ * starts and removed when it is undeployed, so a redeployment publishes the live counters
+ */
+@WebListener
+public class ConversionMetricsListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        ConversionMetrics.getDefault();
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        ConversionMetrics.unregisterDefault();
+    }
+}
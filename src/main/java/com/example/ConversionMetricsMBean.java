@@ -0,0 +1,23 @@
+package com.example;
+
+/**
+ * JMX view of {@link ConversionMetrics}; stage timings are published as separate MBeans
+ */
+public interface ConversionMetricsMBean {
+
+    long getBytesIn();
+
+    long getBytesOut();
+
+    long getPages();
+
+    long getConversions();
+
+    int getInFlight();
+
+    long getErrors();
+
+    long getCacheHits();
+
+    long getCacheMisses();
+}
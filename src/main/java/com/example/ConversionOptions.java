@@ -0,0 +1,169 @@
+package com.example;
+
+import java.io.File;
+import java.util.zip.Deflater;
+
+/**
+ * Tuning options for a single image to PDF conversion
+ */
+public class ConversionOptions {
+
+    /** Memory budget value meaning the document is kept entirely on the heap */
+    public static final long UNLIMITED_MEMORY = -1;
+
+    // Number of worker threads used to load and encode images
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    // Maximum number of images prepared ahead of page assembly
+    private int readAhead = Runtime.getRuntime().availableProcessors() * 2;
+
+    // Heap bytes the document's streams may use before spilling to a scratch file
+    private long memoryBudget = UNLIMITED_MEMORY;
+
+    // Directory for scratch files, or null for java.io.tmpdir
+    private File scratchDirectory;
+
+    // Highest effective resolution an image is embedded at, 0 to embed at full resolution
+    private int targetDpi = 0;
+
+    // Quality used when a JPEG has to be re-encoded
+    private float jpegQuality = 0.85f;
+
+    // Whether identical images in a batch share a single XObject
+    private boolean deduplicate = true;
+
+    // Deflate level for images encoded losslessly
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the number of worker threads that decode and encode images
+     */
+    public ConversionOptions setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public int getReadAhead() {
+        return readAhead;
+    }
+
+    /**
+     * Sets how many images may be prepared ahead of the page being assembled.
+     * Bounds the number of encoded images held in memory at once.
+     */
+    public ConversionOptions setReadAhead(int readAhead) {
+        if (readAhead < 1) {
+            throw new IllegalArgumentException("Read-ahead must be at least 1");
+        }
+        this.readAhead = readAhead;
+        return this;
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Sets how many bytes of heap the document's streams may use.
+     * Streams beyond the budget are spilled to a scratch file that is deleted when the document closes.
+     * Use {@link #UNLIMITED_MEMORY} to keep everything on the heap.
+     */
+    public ConversionOptions setMemoryBudget(long memoryBudget) {
+        if (memoryBudget < 0 && memoryBudget != UNLIMITED_MEMORY) {
+            throw new IllegalArgumentException("Memory budget must be positive or UNLIMITED_MEMORY");
+        }
+        this.memoryBudget = memoryBudget;
+        return this;
+    }
+
+    public File getScratchDirectory() {
+        return scratchDirectory;
+    }
+
+    /**
+     * Sets where scratch files are created when the memory budget is exceeded
+     */
+    public ConversionOptions setScratchDirectory(File scratchDirectory) {
+        this.scratchDirectory = scratchDirectory;
+        return this;
+    }
+
+    public int getTargetDpi() {
+        return targetDpi;
+    }
+
+    /**
+     * Sets the highest effective resolution, in dots per inch of the drawn image.
+     * Images with more pixels than needed are downsampled before they are encoded.
+     * Use 0 to always embed images at full resolution.
+     */
+    public ConversionOptions setTargetDpi(int targetDpi) {
+        if (targetDpi < 0) {
+            throw new IllegalArgumentException("Target DPI must not be negative");
+        }
+        this.targetDpi = targetDpi;
+        return this;
+    }
+
+    public float getJpegQuality() {
+        return jpegQuality;
+    }
+
+    /**
+     * Sets the quality, from 0 to 1, used when a JPEG has to be re-encoded, e.g. after downsampling
+     */
+    public ConversionOptions setJpegQuality(float jpegQuality) {
+        if (jpegQuality < 0f || jpegQuality > 1f) {
+            throw new IllegalArgumentException("JPEG quality must be between 0 and 1");
+        }
+        this.jpegQuality = jpegQuality;
+        return this;
+    }
+
+    public boolean isDeduplicate() {
+        return deduplicate;
+    }
+
+    /**
+     * Sets whether images with identical file contents are embedded once and shared by their pages
+     */
+    public ConversionOptions setDeduplicate(boolean deduplicate) {
+        this.deduplicate = deduplicate;
+        return this;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Sets the Deflate level, from 0 (store) to 9 (smallest), for images that are encoded losslessly.
+     * Lower levels finish sooner at the cost of larger files; {@link Deflater#DEFAULT_COMPRESSION}
+     * uses zlib's default of 6.
+     */
+    public ConversionOptions setCompressionLevel(int compressionLevel) {
+        if ((compressionLevel < 0 || compressionLevel > 9) && compressionLevel != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("Compression level must be between 0 and 9");
+        }
+        this.compressionLevel = compressionLevel;
+        return this;
+    }
+
+    /**
+     * Describes the options that change the bytes of the generated PDF.
+     * Options that only affect speed or memory use are left out, so they do not split result caches.
+     */
+    String outputKey() {
+        return "targetDpi=" + targetDpi
+                + ";jpegQuality=" + jpegQuality
+                + ";deduplicate=" + deduplicate
+                + ";compressionLevel=" + compressionLevel;
+    }
+}
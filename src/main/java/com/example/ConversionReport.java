@@ -0,0 +1,114 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Summary of how each image in a conversion was embedded
+ */
+public class ConversionReport {
+
+    /**
+     * How an image ended up in the PDF
+     */
+    public enum EmbedMethod {
+        /** Original compressed bytes were embedded without decoding pixels */
+        PASSTHROUGH,
+        /** Image was decoded and re-encoded */
+        DECODED,
+        /** Image is identical to an earlier one and shares its XObject */
+        REUSED
+    }
+
+    /**
+     * Embedding outcome for one image
+     */
+    public static class Entry {
+        private final String imagePath;
+        private final EmbedMethod method;
+        private final String fallbackReason;
+        private final boolean downsampled;
+
+        Entry(String imagePath, EmbedMethod method, String fallbackReason, boolean downsampled) {
+            this.imagePath = imagePath;
+            this.method = method;
+            this.fallbackReason = fallbackReason;
+            this.downsampled = downsampled;
+        }
+
+        public String getImagePath() {
+            return imagePath;
+        }
+
+        public EmbedMethod getMethod() {
+            return method;
+        }
+
+        /**
+         * Why a passthrough was not possible, or null if none was attempted or it succeeded
+         */
+        public String getFallbackReason() {
+            return fallbackReason;
+        }
+
+        /**
+         * Whether the image was resampled to the target DPI before it was encoded
+         */
+        public boolean isDownsampled() {
+            return downsampled;
+        }
+
+        @Override
+        public String toString() {
+            return imagePath + ": " + method + (fallbackReason != null ? " (" + fallbackReason + ")" : "")
+                    + (downsampled ? ", downsampled" : "");
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    void add(PreparedImage image) {
+        entries.add(new Entry(image.sourcePath, image.embedMethod, image.fallbackReason, image.downsampled));
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    public List<String> getPassthroughImages() {
+        return pathsWith(EmbedMethod.PASSTHROUGH);
+    }
+
+    public List<String> getDecodedImages() {
+        return pathsWith(EmbedMethod.DECODED);
+    }
+
+    public List<String> getReusedImages() {
+        return pathsWith(EmbedMethod.REUSED);
+    }
+
+    public List<String> getDownsampledImages() {
+        return entries.stream()
+                .filter(Entry::isDownsampled)
+                .map(Entry::getImagePath)
+                .collect(Collectors.toList());
+    }
+
+    private List<String> pathsWith(EmbedMethod method) {
+        return entries.stream()
+                .filter(entry -> entry.method == method)
+                .map(Entry::getImagePath)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public String toString() {
+        return entries.size() + " image(s): "
+                + getPassthroughImages().size() + " passthrough, "
+                + getDecodedImages().size() + " decoded, "
+                + getReusedImages().size() + " reused, "
+                + getDownsampledImages().size() + " downsampled";
+    }
+}
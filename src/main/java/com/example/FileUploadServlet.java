@@ -1,8 +1,12 @@
 package com.example;
 
 import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.apache.commons.io.output.TeeOutputStream;
 
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
@@ -10,9 +14,14 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Servlet for handling image uploads and PDF conversion
@@ -24,9 +33,84 @@ public class FileUploadServlet extends HttpServlet {
     private static final int MEMORY_THRESHOLD = 1024 * 1024 * 3; // 3MB
     private static final int MAX_FILE_SIZE = 1024 * 1024 * 40; // 40MB
     private static final int MAX_REQUEST_SIZE = 1024 * 1024 * 50; // 50MB
+    private static final int RESPONSE_BUFFER_SIZE = 1024 * 64; // 64KB
 
     private final ImageToPDFService pdfService = new ImageToPDFService();
 
+    private static final long DEFAULT_CACHE_SIZE_MB = 512;
+    private static final int DEFAULT_ADMISSION_WAIT_SECONDS = 30;
+
+    // Per-request document memory budget, set with the "memoryBudgetMB" init parameter (0 = unlimited)
+    private long memoryBudget = ConversionOptions.UNLIMITED_MEMORY;
+
+    // Finished PDFs for repeated uploads, null when disabled with cacheMaxMB = 0
+    private PdfResultCache resultCache;
+
+    // Memory reservations shared with every other conversion in this JVM
+    private final AdmissionController admission = AdmissionController.getDefault();
+
+    private final ConversionMetrics metrics = ConversionMetrics.getDefault();
+
+    // How long a request waits for memory before it is rejected, set with "admissionWaitSeconds"
+    private int admissionWaitSeconds = DEFAULT_ADMISSION_WAIT_SECONDS;
+
+    // "streaming" feeds each part to the converter while the request is still arriving;
+    // the default "buffered" mode parses the whole request first and can use the result cache
+    private boolean streamingUpload;
+
+    @Override
+    public void init() throws ServletException {
+        String modeParam = getInitParameter("uploadMode");
+        if (modeParam != null && !modeParam.trim().isEmpty()) {
+            String mode = modeParam.trim().toLowerCase();
+            if (!mode.equals("streaming") && !mode.equals("buffered")) {
+                throw new ServletException("Invalid uploadMode: " + modeParam);
+            }
+            streamingUpload = mode.equals("streaming");
+        }
+
+        String budgetParam = getInitParameter("memoryBudgetMB");
+        if (budgetParam != null && !budgetParam.trim().isEmpty()) {
+            try {
+                long budgetMB = Long.parseLong(budgetParam.trim());
+                memoryBudget = budgetMB > 0 ? budgetMB * 1024 * 1024 : ConversionOptions.UNLIMITED_MEMORY;
+            } catch (NumberFormatException e) {
+                throw new ServletException("Invalid memoryBudgetMB: " + budgetParam, e);
+            }
+        }
+
+        String waitParam = getInitParameter("admissionWaitSeconds");
+        if (waitParam != null && !waitParam.trim().isEmpty()) {
+            try {
+                admissionWaitSeconds = Integer.parseInt(waitParam.trim());
+            } catch (NumberFormatException e) {
+                throw new ServletException("Invalid admissionWaitSeconds: " + waitParam, e);
+            }
+        }
+
+        // Result cache, sized with "cacheMaxMB" and placed with "cacheDirectory"
+        long cacheMaxMB = DEFAULT_CACHE_SIZE_MB;
+        String cacheSizeParam = getInitParameter("cacheMaxMB");
+        if (cacheSizeParam != null && !cacheSizeParam.trim().isEmpty()) {
+            try {
+                cacheMaxMB = Long.parseLong(cacheSizeParam.trim());
+            } catch (NumberFormatException e) {
+                throw new ServletException("Invalid cacheMaxMB: " + cacheSizeParam, e);
+            }
+        }
+        if (cacheMaxMB > 0) {
+            String cacheDirParam = getInitParameter("cacheDirectory");
+            File cacheDir = cacheDirParam != null && !cacheDirParam.trim().isEmpty()
+                    ? new File(cacheDirParam.trim())
+                    : new File(System.getProperty("java.io.tmpdir"), "pdf-result-cache");
+            try {
+                resultCache = new PdfResultCache(cacheDir, cacheMaxMB * 1024 * 1024);
+            } catch (IOException e) {
+                throw new ServletException("Cannot open result cache in " + cacheDir, e);
+            }
+        }
+    }
+
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
@@ -37,6 +121,19 @@ public class FileUploadServlet extends HttpServlet {
             return;
         }
 
+        // A client that disconnects is noticed by the next read of the upload or write of the PDF,
+        // which fails the request; nothing stops a conversion in between
+        if (streamingUpload) {
+            doStreamingPost(request, response);
+        } else {
+            doBufferedPost(request, response);
+        }
+    }
+
+    /**
+     * Parses the whole request first, then converts, serving repeated uploads from the result cache
+     */
+    private void doBufferedPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
         // Configure upload settings
         DiskFileItemFactory factory = new DiskFileItemFactory();
         factory.setSizeThreshold(MEMORY_THRESHOLD);
@@ -57,6 +154,7 @@ public class FileUploadServlet extends HttpServlet {
 
         try {
             // Parse the request's content to extract file data
+            long parseStart = System.nanoTime();
             @SuppressWarnings("unchecked")
             List<FileItem> formItems = upload.parseRequest(request);
 
@@ -77,43 +175,201 @@ public class FileUploadServlet extends HttpServlet {
                     }
                 }
             }
+            metrics.recordSince(ConversionMetrics.Stage.UPLOAD_PARSE, parseStart);
 
             if (uploadedFiles.isEmpty()) {
                 response.getWriter().println("Error: No valid image files were uploaded.");
                 return;
             }
 
-            // Convert images to PDF
+            ConversionOptions options = new ConversionOptions().setMemoryBudget(memoryBudget);
             String pdfFileName = "converted_" + UUID.randomUUID().toString() + ".pdf";
-            String pdfPath = uploadPath + File.separator + pdfFileName;
-
-            pdfService.convertImagesToPDF(uploadedFiles, pdfPath);
 
             // Set response to download the PDF
             response.setContentType("application/pdf");
             response.setHeader("Content-Disposition", "attachment; filename=\"" + pdfFileName + "\"");
 
-            // Stream the PDF file to the response
-            try (FileInputStream fileInputStream = new FileInputStream(pdfPath);
-                 OutputStream responseOutputStream = response.getOutputStream()) {
+            // Serve repeated uploads straight from the cache
+            String cacheKey = null;
+            if (resultCache != null) {
+                cacheKey = PdfResultCache.key(uploadedFiles, options);
+                FileChannel cached = resultCache.open(cacheKey);
+                metrics.cacheLookup(cached != null);
+                if (cached != null) {
+                    long responseStart = System.nanoTime();
+                    try (FileChannel source = cached) {
+                        response.setHeader("X-Cache", "HIT");
+                        response.setContentLengthLong(source.size());
+                        metrics.addBytesOut(PdfResultCache.transferTo(source,
+                                Channels.newChannel(response.getOutputStream())));
+                    }
+                    metrics.recordSince(ConversionMetrics.Stage.RESPONSE, responseStart);
+                    return;
+                }
+                response.setHeader("X-Cache", "MISS");
+            }
+
+            // Reserve the estimated memory before decoding anything
+            AdmissionController.Permit permit = admission.acquire(uploadedFiles, options,
+                    admissionWaitSeconds, TimeUnit.SECONDS);
+            try {
+                if (resultCache == null) {
+                    streamConversion(uploadedFiles, options, response, null);
+                    return;
+                }
 
-                byte[] buffer = new byte[4096];
-                int bytesRead;
-                while ((bytesRead = fileInputStream.read(buffer)) != -1) {
-                    responseOutputStream.write(buffer, 0, bytesRead);
+                File pendingFile = resultCache.createTempFile();
+                try {
+                    streamConversion(uploadedFiles, options, response, pendingFile);
+                    resultCache.store(cacheKey, pendingFile);
+                } finally {
+                    Files.deleteIfExists(pendingFile.toPath());
                 }
+            } finally {
+                permit.close();
             }
 
-            // Clean up uploaded files and generated PDF
+        } catch (AdmissionController.RejectedException ex) {
+            metrics.recordError(ex);
+            response.reset();
+            response.setHeader("Retry-After", String.valueOf(admissionWaitSeconds));
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, ex.getMessage());
+        } catch (Exception ex) {
+            // Conversion failures are already counted by the service
+            if (ex instanceof FileUploadException) {
+                metrics.recordError(ex);
+            }
+            if (!response.isCommitted()) {
+                response.reset();
+                response.getWriter().println("Error: " + ex.getMessage());
+            }
+            ex.printStackTrace();
+        } finally {
+            // Clean up uploaded files
             for (String filePath : uploadedFiles) {
                 new File(filePath).delete();
             }
-            new File(pdfPath).delete();
+        }
+    }
+
+    /**
+     * Converts the images while the request is still being received. Each part is written once to a
+     * per-request directory (the converter maps and decodes files) and handed to the conversion as
+     * soon as it is complete, so earlier images are prepared while later ones are still uploading.
+     * Memory is reserved image by image as parts arrive. A request never waits for memory while it
+     * holds some: it first assembles its queued pages and releases their reservations, so concurrent
+     * uploads cannot each hold part of the capacity and starve one another. The result cache is not
+     * used, since its key needs every input before the conversion starts.
+     */
+    private void doStreamingPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ServletFileUpload upload = new ServletFileUpload();
+        upload.setFileSizeMax(MAX_FILE_SIZE);
+        upload.setSizeMax(MAX_REQUEST_SIZE);
+
+        ConversionOptions options = new ConversionOptions().setMemoryBudget(memoryBudget);
+        File uploadDir = Files.createTempDirectory(
+                new File(System.getProperty("java.io.tmpdir")).toPath(), "upload_").toFile();
+        List<AdmissionController.Permit> permits = new ArrayList<>();
+
+        try (ImageToPDFService.ConversionSession session = pdfService.openSession(options)) {
+            int imageCount = 0;
+            // Only time spent receiving parts counts as parsing; conversion runs in between
+            long parseStart = System.nanoTime();
+            long parseNanos = 0;
+            FileItemIterator items = upload.getItemIterator(request);
+            while (items.hasNext()) {
+                FileItemStream item = items.next();
+                if (item.isFormField() || item.getName() == null) {
+                    continue;
+                }
+                String fileName = new File(item.getName()).getName();
+                if (!isValidImageFile(fileName)) {
+                    continue;
+                }
+
+                // Prefix with the index so files with the same name do not overwrite each other
+                File storeFile = new File(uploadDir, imageCount++ + "_" + fileName);
+                try (InputStream partStream = item.openStream()) {
+                    Files.copy(partStream, storeFile.toPath());
+                }
+                parseNanos += System.nanoTime() - parseStart;
+
+                List<String> image = Collections.singletonList(storeFile.getPath());
+                AdmissionController.Permit permit;
+                try {
+                    permit = admission.acquire(image, options, 0, TimeUnit.SECONDS);
+                } catch (AdmissionController.RejectedException busy) {
+                    // Finish the queued pages and hand back their memory before waiting for more
+                    session.assembleQueued();
+                    for (AdmissionController.Permit held : permits) {
+                        held.close();
+                    }
+                    permits.clear();
+                    permit = admission.acquire(image, options, admissionWaitSeconds, TimeUnit.SECONDS);
+                }
+                permits.add(permit);
+                session.addImage(storeFile.getPath());
+                parseStart = System.nanoTime();
+            }
+            metrics.record(ConversionMetrics.Stage.UPLOAD_PARSE, parseNanos + System.nanoTime() - parseStart);
+
+            if (imageCount == 0) {
+                response.getWriter().println("Error: No valid image files were uploaded.");
+                return;
+            }
+
+            // Nothing reaches the response until every page is assembled, so errors can still reset it
+            response.setContentType("application/pdf");
+            response.setHeader("Content-Disposition",
+                    "attachment; filename=\"converted_" + UUID.randomUUID() + ".pdf\"");
+            long responseStart = System.nanoTime();
+            response.setBufferSize(RESPONSE_BUFFER_SIZE);
+            session.finish(response.getOutputStream());
+            response.flushBuffer();
+            metrics.recordSince(ConversionMetrics.Stage.RESPONSE, responseStart);
 
+        } catch (AdmissionController.RejectedException ex) {
+            metrics.recordError(ex);
+            response.reset();
+            response.setHeader("Retry-After", String.valueOf(admissionWaitSeconds));
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, ex.getMessage());
         } catch (Exception ex) {
-            response.getWriter().println("Error: " + ex.getMessage());
+            // Conversion failures are already counted by the service
+            if (ex instanceof FileUploadException) {
+                metrics.recordError(ex);
+            }
+            if (!response.isCommitted()) {
+                response.reset();
+                response.getWriter().println("Error: " + ex.getMessage());
+            }
             ex.printStackTrace();
+        } finally {
+            for (AdmissionController.Permit permit : permits) {
+                permit.close();
+            }
+            ConversionJobManager.deleteDirectory(uploadDir);
+        }
+    }
+
+    /**
+     * Converts the images and streams the PDF into the response, optionally keeping a copy in a file.
+     * No Content-Length is set, so once the buffer fills the container switches to chunked transfer encoding.
+     */
+    private void streamConversion(List<String> imagePaths, ConversionOptions options, HttpServletResponse response,
+                                  File copyFile) throws IOException {
+        long responseStart = System.nanoTime();
+        response.setBufferSize(RESPONSE_BUFFER_SIZE);
+        OutputStream responseStream = response.getOutputStream();
+        if (copyFile == null) {
+            pdfService.convertImagesToPDF(imagePaths, responseStream, options);
+        } else {
+            try (OutputStream fileStream = new BufferedOutputStream(new FileOutputStream(copyFile))) {
+                pdfService.convertImagesToPDF(imagePaths, new TeeOutputStream(responseStream, fileStream),
+                        options);
+            }
         }
+        response.flushBuffer();
+        metrics.recordSince(ConversionMetrics.Stage.RESPONSE, responseStart);
     }
 
     private boolean isValidImageFile(String fileName) {
@@ -0,0 +1,530 @@
+package com.example;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long-running mode that watches input directories and converts images as they arrive.
+ * Arriving files are grouped into documents by a {@link GroupRule}; a group is converted once
+ * none of its files has changed for the quiet period, so files still being copied are never read.
+ * Finished PDFs are moved atomically into the output folder and the sources into {@code .done}
+ * (or {@code .failed}) inside the watched directory.
+ */
+public class HotFolderDaemon {
+
+    /**
+     * How arriving images are grouped into documents
+     */
+    public enum GroupRule {
+        /** One document per directory below the watched one */
+        SUBFOLDER,
+        /** One document per file name prefix, e.g. {@code invoice42_001.jpg} and {@code invoice42_002.jpg} */
+        PREFIX,
+        /** One document per burst of files, ended by the quiet period */
+        QUIET
+    }
+
+    private static final String[] SUPPORTED_FORMATS = {
+            ".jpg", ".jpeg", ".png", ".gif", ".bmp", ".tiff", ".tif"
+    };
+
+    private static final String DONE_DIRECTORY = ".done";
+    private static final String FAILED_DIRECTORY = ".failed";
+    private static final long DEFAULT_QUIET_MILLIS = 10_000;
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: Main watch [options] <directory>...",
+            "  -o, --output-dir DIR    where finished PDFs are moved (required)",
+            "  -g, --group-by RULE     subfolder, prefix or quiet (default: subfolder)",
+            "  -q, --quiet-seconds N   seconds without changes before a group is converted (default: 10)",
+            "      --separator S       end of the prefix for --group-by prefix (default: _)",
+            "  -j, --jobs N            documents converted at the same time (default: cores / 2)",
+            "      --dpi N             downsample images above N dpi");
+
+    /**
+     * Files collected for one document
+     */
+    private static final class Group {
+        final String name;
+        final Path root;
+        final List<Path> files = new ArrayList<>();
+        long lastChange;
+
+        Group(String name, Path root) {
+            this.name = name;
+            this.root = root;
+        }
+    }
+
+    private final ImageToPDFService pdfService = new ImageToPDFService();
+    private final List<Path> inputDirectories;
+    private final Path outputDirectory;
+    private final GroupRule groupRule;
+    private final long quietMillis;
+    private final String prefixSeparator;
+    private final ConversionOptions options;
+    private final ThreadPoolExecutor executor;
+
+    private final WatchService watchService;
+    // Watched directory for each key, and the input directory it belongs to
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    private final Map<Path, Path> rootOf = new HashMap<>();
+
+    // Only touched by the watch thread
+    private final Map<String, Group> pending = new LinkedHashMap<>();
+    // Files handed to a worker; events for them are ignored until they are moved away
+    private final Set<Path> converting = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param inputDirectories Directories to watch
+     * @param outputDirectory Where finished PDFs are moved
+     * @param groupRule How arriving files are grouped into documents
+     * @param quietMillis How long a group must stay unchanged before it is converted
+     * @param prefixSeparator End of the file name prefix for {@link GroupRule#PREFIX}
+     * @param workers Documents converted at the same time
+     * @param options Options for every conversion
+     */
+    public HotFolderDaemon(List<Path> inputDirectories, Path outputDirectory, GroupRule groupRule,
+                           long quietMillis, String prefixSeparator, int workers,
+                           ConversionOptions options) throws IOException {
+        this.inputDirectories = inputDirectories;
+        this.outputDirectory = outputDirectory;
+        this.groupRule = groupRule;
+        this.quietMillis = quietMillis;
+        this.prefixSeparator = prefixSeparator;
+        this.options = options;
+        Files.createDirectories(outputDirectory);
+        this.watchService = outputDirectory.getFileSystem().newWatchService();
+
+        // When every worker is busy the watch thread converts the group itself, which slows intake
+        // instead of queueing without bound; events wait in the WatchService meanwhile
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workers),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "hot-folder-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Parses the arguments and watches until the process is stopped
+     * @return the process exit code, 0 after printing help, 2 for invalid arguments
+     */
+    public static int run(String[] args) {
+        List<Path> directories = new ArrayList<>();
+        Path output = null;
+        GroupRule rule = GroupRule.SUBFOLDER;
+        long quietMillis = DEFAULT_QUIET_MILLIS;
+        String separator = "_";
+        int workers = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        ConversionOptions options = new ConversionOptions();
+
+        HotFolderDaemon daemon;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "-o":
+                    case "--output-dir":
+                        output = Paths.get(value(args, ++i, arg));
+                        break;
+                    case "-g":
+                    case "--group-by":
+                        rule = GroupRule.valueOf(value(args, ++i, arg).toUpperCase());
+                        break;
+                    case "-q":
+                    case "--quiet-seconds":
+                        quietMillis = Long.parseLong(value(args, ++i, arg)) * 1000;
+                        break;
+                    case "--separator":
+                        separator = value(args, ++i, arg);
+                        break;
+                    case "-j":
+                    case "--jobs":
+                        workers = Integer.parseInt(value(args, ++i, arg));
+                        break;
+                    case "--dpi":
+                        options.setTargetDpi(Integer.parseInt(value(args, ++i, arg)));
+                        break;
+                    case "-h":
+                    case "--help":
+                        System.out.println(USAGE);
+                        return 0;
+                    default:
+                        if (arg.startsWith("-")) {
+                            throw new IllegalArgumentException("Unknown option " + arg);
+                        }
+                        Path directory = Paths.get(arg);
+                        if (!Files.isDirectory(directory)) {
+                            throw new IllegalArgumentException("Not a directory: " + arg);
+                        }
+                        directories.add(directory);
+                }
+            }
+            if (directories.isEmpty() || output == null) {
+                throw new IllegalArgumentException("An output directory and at least one input directory are needed");
+            }
+            if (quietMillis < 0 || workers < 1 || separator.isEmpty()) {
+                throw new IllegalArgumentException("Invalid quiet period, job count or separator");
+            }
+            options.setParallelism(Math.max(1, Runtime.getRuntime().availableProcessors() / workers));
+            daemon = new HotFolderDaemon(directories, output, rule, quietMillis, separator, workers, options);
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(daemon::stop, "hot-folder-shutdown"));
+        try {
+            daemon.watch();
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException(option + " needs a value");
+        }
+        return args[index];
+    }
+
+    /**
+     * Picks up files already present, then converts arriving groups until {@link #stop()} is called
+     */
+    public void watch() throws IOException {
+        for (Path directory : inputDirectories) {
+            Path root = directory.toAbsolutePath().normalize();
+            register(root, root);
+            scan(root, root);
+        }
+        System.out.println("Watching " + inputDirectories + ", grouping by " + groupRule.name().toLowerCase()
+                + ", PDFs go to " + outputDirectory);
+
+        try {
+            while (true) {
+                long wait = convertQuietGroups();
+                WatchKey key = wait < 0 ? watchService.take() : watchService.poll(wait, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    handleEvents(key);
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // stop() was called
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops watching and waits for conversions in progress to finish
+     */
+    public void stop() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close the watch service: " + e.getMessage());
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void register(Path directory, Path root) throws IOException {
+        WatchKey key = directory.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        watchedDirectories.put(key, directory);
+        rootOf.put(directory, root);
+    }
+
+    /**
+     * Registers a subdirectory for the subfolder rule and adds what is already in it. A directory
+     * renamed or deleted before it is registered is logged and skipped, so it cannot stop the daemon.
+     */
+    private void watchSubdirectory(Path directory, Path root) {
+        try {
+            register(directory, root);
+        } catch (IOException e) {
+            System.err.println("Failed to watch " + directory + ": " + e);
+            return;
+        }
+        scan(directory, root);
+    }
+
+    /**
+     * Adds the images in a directory, and registers its subdirectories for the subfolder rule
+     */
+    private void scan(Path directory, Path root) {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                if (isIgnored(entry)) {
+                    continue;
+                }
+                if (Files.isDirectory(entry)) {
+                    if (groupRule == GroupRule.SUBFOLDER) {
+                        watchSubdirectory(entry, root);
+                    }
+                } else {
+                    fileChanged(entry, root);
+                }
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            System.err.println("Failed to scan " + directory + ": " + e);
+        }
+    }
+
+    private void handleEvents(WatchKey key) {
+        Path directory = watchedDirectories.get(key);
+        if (directory == null) {
+            // Left over from a directory that is no longer watched
+            key.cancel();
+            return;
+        }
+        for (WatchEvent<?> event : key.pollEvents()) {
+            Path root = rootOf.get(directory);
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Events were lost; the directory contents are the source of truth
+                scan(directory, root);
+                continue;
+            }
+
+            Path entry = directory.resolve((Path) event.context());
+            if (isIgnored(entry)) {
+                continue;
+            }
+            if (Files.isDirectory(entry)) {
+                if (groupRule == GroupRule.SUBFOLDER && event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                    // Also scans it: files may have landed before the directory was registered
+                    watchSubdirectory(entry, root);
+                }
+            } else {
+                fileChanged(entry, root);
+            }
+        }
+        if (!key.reset()) {
+            // The directory is gone
+            watchedDirectories.remove(key);
+            rootOf.remove(directory);
+        }
+    }
+
+    /**
+     * Records a new or growing image in its group and restarts the group's quiet period
+     */
+    private void fileChanged(Path file, Path root) {
+        // Late events can refer to files that were already converted and moved away
+        if (!isImage(file) || converting.contains(file) || !Files.isRegularFile(file)) {
+            return;
+        }
+        String key = groupKey(file, root);
+        Group group = pending.computeIfAbsent(key, k -> new Group(groupName(file, root), root));
+        if (!group.files.contains(file)) {
+            group.files.add(file);
+        }
+        group.lastChange = System.currentTimeMillis();
+    }
+
+    private String groupKey(Path file, Path root) {
+        switch (groupRule) {
+            case PREFIX:
+                return file.getParent() + File.separator + prefixOf(file);
+            case QUIET:
+                return root.toString();
+            default:
+                return file.getParent().toString();
+        }
+    }
+
+    private String groupName(Path file, Path root) {
+        switch (groupRule) {
+            case PREFIX:
+                return prefixOf(file);
+            case QUIET:
+                return root.getFileName() + "_" + System.currentTimeMillis();
+            default:
+                Path parent = file.getParent();
+                return parent.equals(root)
+                        ? root.getFileName() + "_" + System.currentTimeMillis()
+                        : root.relativize(parent).toString().replace(File.separatorChar, '_');
+        }
+    }
+
+    private String prefixOf(Path file) {
+        String name = file.getFileName().toString();
+        int end = name.indexOf(prefixSeparator);
+        if (end <= 0) {
+            end = name.lastIndexOf('.');
+        }
+        return end > 0 ? name.substring(0, end) : name;
+    }
+
+    /**
+     * Hands every group that has been quiet long enough to the executor
+     * @return milliseconds until the next group becomes quiet, or -1 if nothing is pending
+     */
+    private long convertQuietGroups() {
+        long now = System.currentTimeMillis();
+        long nextWait = -1;
+        Iterator<Group> groups = pending.values().iterator();
+        while (groups.hasNext()) {
+            Group group = groups.next();
+            long remaining = group.lastChange + quietMillis - now;
+            if (remaining > 0) {
+                nextWait = nextWait < 0 ? remaining : Math.min(nextWait, remaining);
+                continue;
+            }
+            groups.remove();
+            converting.addAll(group.files);
+            executor.execute(() -> convert(group));
+        }
+        return nextWait;
+    }
+
+    private void convert(Group group) {
+        List<Path> files = new ArrayList<>(group.files);
+        Collections.sort(files);
+        List<String> imagePaths = new ArrayList<>();
+        for (Path file : files) {
+            imagePaths.add(file.toString());
+        }
+
+        long start = System.nanoTime();
+        Path partial = outputDirectory.resolve("." + group.name + "_" + Thread.currentThread().getId() + ".part");
+        boolean succeeded = false;
+        try {
+            ConversionReport report;
+            AdmissionController.Permit permit = AdmissionController.getDefault()
+                    .acquire(imagePaths, options, Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(partial))) {
+                report = pdfService.convertImagesToPDF(imagePaths, output, options);
+            } finally {
+                permit.close();
+            }
+            Path target = moveIntoOutput(partial, group.name);
+            succeeded = true;
+            System.out.println(target + ": " + report + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } catch (Exception e) {
+            System.err.println("Failed to convert " + group.name + ": " + e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(partial);
+            } catch (IOException e) {
+                System.err.println("Failed to delete " + partial + ": " + e.getMessage());
+            }
+            archive(files, group.root, succeeded ? DONE_DIRECTORY : FAILED_DIRECTORY);
+            converting.removeAll(files);
+        }
+    }
+
+    /**
+     * Moves a finished PDF into the output folder under a name no other PDF has. Once linked the PDF
+     * is published; the caller deletes the partial file, and failing to is only logged.
+     */
+    private Path moveIntoOutput(Path partial, String name) throws IOException {
+        return claimName(partial, outputDirectory, name, ".pdf");
+    }
+
+    /**
+     * Gives a file a name in the directory that nothing else has, name + extension first, then
+     * name_2 + extension and so on. The name is claimed with a hard link, which fails if the name
+     * exists and shows readers the whole file at once; ATOMIC_MOVE alone would silently replace a
+     * file another worker just finished. After a link the source is still in place.
+     */
+    private static Path claimName(Path source, Path directory, String name, String extension) throws IOException {
+        for (int n = 1; ; n++) {
+            Path target = directory.resolve(n == 1 ? name + extension : name + "_" + n + extension);
+            try {
+                Files.createLink(target, source);
+                return target;
+            } catch (FileAlreadyExistsException e) {
+                // Taken by another file
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                // No hard links here: reserve the name with an empty file, then replace the reservation
+                try {
+                    Files.createFile(target);
+                } catch (FileAlreadyExistsException taken) {
+                    continue;
+                }
+                Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                return target;
+            }
+        }
+    }
+
+    /**
+     * Moves converted sources out of the watched tree so they are not picked up again. Scanners
+     * reuse names in every batch, so a name already archived gets a numbered one rather than
+     * replacing a source that may be the only copy of a failed input.
+     */
+    private void archive(List<Path> files, Path root, String directoryName) {
+        Path archive = root.resolve(directoryName);
+        for (Path file : files) {
+            try {
+                Path directory = archive.resolve(root.relativize(file)).getParent();
+                Files.createDirectories(directory);
+                String fileName = file.getFileName().toString();
+                int dot = fileName.lastIndexOf('.');
+                String name = dot > 0 ? fileName.substring(0, dot) : fileName;
+                String extension = dot > 0 ? fileName.substring(dot) : "";
+                claimName(file, directory, name, extension);
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                System.err.println("Failed to move " + file + " to " + archive + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Hidden entries are temporary uploads, partial results and the archive directories
+     */
+    private static boolean isIgnored(Path entry) {
+        return entry.getFileName().toString().startsWith(".");
+    }
+
+    private static boolean isImage(Path file) {
+        String name = file.getFileName().toString().toLowerCase();
+        for (String format : SUPPORTED_FORMATS) {
+            if (name.endsWith(format)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
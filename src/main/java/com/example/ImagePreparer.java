@@ -0,0 +1,789 @@
+package com.example;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColorSpace;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceCMYK;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceGray;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
+import org.apache.pdfbox.pdmodel.graphics.color.PDIndexed;
+
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import org.w3c.dom.NodeList;
+import java.awt.AlphaComposite;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * Loads image files and encodes them into PDF image streams.
+ * Holds no document state, so it is safe to call from several threads at once.
+ */
+class ImagePreparer {
+
+    private static final float POINTS_PER_INCH = 72f;
+
+    private final ConversionMetrics metrics = ConversionMetrics.getDefault();
+
+    /**
+     * Loads and encodes a single image file
+     */
+    PreparedImage prepare(String imagePath, ConversionOptions options) throws IOException {
+        String lowerCasePath = imagePath.toLowerCase();
+        boolean jpeg = lowerCasePath.endsWith(".jpg") || lowerCasePath.endsWith(".jpeg");
+        String fallbackReason = null;
+        if (lowerCasePath.endsWith(".png")) {
+            PngDecoder header = openPng(imagePath);
+            if (header == null) {
+                fallbackReason = "no readable PNG header";
+            } else {
+                try {
+                    fallbackReason = header.passthroughUnsupportedReason();
+                    if (fallbackReason == null) {
+                        if (targetSize(header.width, header.height, options) == null) {
+                            return preparePngPassthrough(imagePath, header);
+                        }
+                        fallbackReason = "downsampled to " + options.getTargetDpi() + " dpi";
+                    }
+                } finally {
+                    header.close();
+                }
+            }
+        }
+        if (jpeg) {
+            ByteBuffer data = mapFile(imagePath);
+            JpegHeader header = JpegHeader.parse(data);
+            fallbackReason = header == null ? "no readable JPEG frame header" : header.unsupportedReason();
+            if (fallbackReason == null) {
+                if (targetSize(header.width, header.height, options) == null) {
+                    return prepareJpegPassthrough(imagePath, data, header);
+                }
+                fallbackReason = "downsampled to " + options.getTargetDpi() + " dpi";
+            }
+        }
+
+        ImageStrips strips = ImageStrips.open(imagePath, 0, options);
+        if (strips != null) {
+            PreparedImage prepared = prepareInStrips(imagePath, strips, options);
+            prepared.fallbackReason = fallbackReason;
+            return prepared;
+        }
+
+        checkInterrupted();
+        long decodeStart = System.nanoTime();
+        DecodedImage decoded = readImage(imagePath, 0, options);
+        metrics.recordSince(ConversionMetrics.Stage.DECODE, decodeStart);
+
+        checkInterrupted();
+        long encodeStart = System.nanoTime();
+        PreparedImage prepared;
+        if (jpeg && decoded.downsampled) {
+            // Keep photos lossy after resampling; a lossless re-encode would be many times larger
+            prepared = prepareJpeg(imagePath, decoded.image, options);
+        } else {
+            prepared = prepareLossless(imagePath, decoded.image, options);
+        }
+        metrics.recordSince(ConversionMetrics.Stage.ENCODE, encodeStart);
+        prepared.fallbackReason = fallbackReason;
+        prepared.downsampled = decoded.downsampled;
+        return prepared;
+    }
+
+    /**
+     * Loads and encodes one frame of a multi-page TIFF. Frames are independent, so any number of
+     * them can be prepared at once, each holding only its own pixels.
+     */
+    PreparedImage prepareFrame(String imagePath, int frameIndex, ConversionOptions options) throws IOException {
+        ImageStrips strips = ImageStrips.open(imagePath, frameIndex, options);
+        if (strips != null) {
+            return prepareInStrips(frameName(imagePath, frameIndex), strips, options);
+        }
+
+        checkInterrupted();
+        long decodeStart = System.nanoTime();
+        DecodedImage decoded = readImage(imagePath, frameIndex, options);
+        metrics.recordSince(ConversionMetrics.Stage.DECODE, decodeStart);
+
+        checkInterrupted();
+        long encodeStart = System.nanoTime();
+        PreparedImage prepared = prepareLossless(frameName(imagePath, frameIndex), decoded.image, options);
+        metrics.recordSince(ConversionMetrics.Stage.ENCODE, encodeStart);
+        prepared.downsampled = decoded.downsampled;
+        return prepared;
+    }
+
+    /**
+     * Decodes and deflates a large image one strip at a time. Always lossless: JPEGs only get here
+     * when downsampled, and the strips cannot be joined into a single baseline JPEG.
+     */
+    private PreparedImage prepareInStrips(String imagePath, ImageStrips strips, ConversionOptions options)
+            throws IOException {
+        LosslessEncoder encoder = null;
+        try (ImageStrips source = strips) {
+            long decodeStart = System.nanoTime();
+            BufferedImage strip;
+            while ((strip = source.next()) != null) {
+                metrics.recordSince(ConversionMetrics.Stage.DECODE, decodeStart);
+                checkInterrupted();
+                long encodeStart = System.nanoTime();
+                if (encoder == null) {
+                    encoder = new LosslessEncoder(source.getWidth(), strip.getType() == BufferedImage.TYPE_BYTE_GRAY,
+                            strip.getColorModel().hasAlpha(), options.getCompressionLevel());
+                }
+                encoder.write(strip);
+                metrics.recordSince(ConversionMetrics.Stage.ENCODE, encodeStart);
+                checkInterrupted();
+                decodeStart = System.nanoTime();
+            }
+            if (encoder == null) {
+                throw new IOException("Image has no rows: " + imagePath);
+            }
+            PreparedImage prepared = encoder.finish(imagePath);
+            prepared.downsampled = source.isDownsampled();
+            return prepared;
+        } finally {
+            if (encoder != null) {
+                encoder.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of frames in a TIFF or GIF, or 1 for formats that hold a single image
+     */
+    static int countFrames(String imagePath) throws IOException {
+        if (!isMultiFrameFormat(imagePath)) {
+            return 1;
+        }
+        try (ImageInputStream input = ImageIO.createImageInputStream(new File(imagePath))) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input)
+                    : Collections.emptyIterator();
+            if (!readers.hasNext()) {
+                return 1;
+            }
+            ImageReader reader = readers.next();
+            try {
+                // Walks the frame headers without decoding any pixels
+                reader.setInput(input, false, true);
+                return Math.max(1, reader.getNumImages(true));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    static boolean isMultiFrameFormat(String imagePath) {
+        String lowerCasePath = imagePath.toLowerCase();
+        return lowerCasePath.endsWith(".tif") || lowerCasePath.endsWith(".tiff") || lowerCasePath.endsWith(".gif");
+    }
+
+    static boolean isAnimation(String imagePath) {
+        return imagePath.toLowerCase().endsWith(".gif");
+    }
+
+    /**
+     * Name under which a frame appears in reports and progress, e.g. {@code scan.tif#3}
+     */
+    static String frameName(String imagePath, int frameIndex) {
+        return imagePath + "#" + (frameIndex + 1);
+    }
+
+    /**
+     * Opens an animated GIF whose frames are composited and prepared in order
+     */
+    AnimationFrames openAnimation(String imagePath) {
+        return new AnimationFrames(imagePath);
+    }
+
+    /**
+     * The frames of an animated GIF. Later frames only hold the pixels that changed, so each page is
+     * drawn onto a canvas that carries the earlier frames forward. Frames are read one at a time from
+     * a single reader; only the canvas and the current frame are held in memory.
+     * Not thread-safe: {@link #next} must not be called concurrently.
+     */
+    final class AnimationFrames implements Closeable {
+        private final String imagePath;
+        private ImageInputStream input;
+        private ImageReader reader;
+        private BufferedImage canvas;
+        private int nextFrame;
+
+        private AnimationFrames(String imagePath) {
+            this.imagePath = imagePath;
+        }
+
+        /**
+         * Composites and encodes the next frame
+         */
+        PreparedImage next(ConversionOptions options) throws IOException {
+            checkInterrupted();
+            long decodeStart = System.nanoTime();
+            if (reader == null) {
+                open();
+            }
+            int frameIndex = nextFrame++;
+            BufferedImage frame = reader.read(frameIndex);
+            IIOMetadataNode metadata = (IIOMetadataNode) reader.getImageMetadata(frameIndex)
+                    .getAsTree("javax_imageio_gif_image_1.0");
+            IIOMetadataNode descriptor = childNode(metadata, "ImageDescriptor");
+            IIOMetadataNode control = childNode(metadata, "GraphicControlExtension");
+            int x = descriptor != null ? Integer.parseInt(descriptor.getAttribute("imageLeftPosition")) : 0;
+            int y = descriptor != null ? Integer.parseInt(descriptor.getAttribute("imageTopPosition")) : 0;
+            String disposal = control != null ? control.getAttribute("disposalMethod") : "none";
+
+            if (canvas == null) {
+                canvas = new BufferedImage(Math.max(canvasWidth(), x + frame.getWidth()),
+                        Math.max(canvasHeight(), y + frame.getHeight()), BufferedImage.TYPE_INT_ARGB);
+            }
+            BufferedImage previous = "restoreToPrevious".equals(disposal) ? copy(canvas) : null;
+            Graphics2D g = canvas.createGraphics();
+            try {
+                g.drawImage(frame, x, y, null);
+            } finally {
+                g.dispose();
+            }
+            metrics.recordSince(ConversionMetrics.Stage.DECODE, decodeStart);
+
+            checkInterrupted();
+            long encodeStart = System.nanoTime();
+            Dimension target = targetSize(canvas.getWidth(), canvas.getHeight(), options);
+            BufferedImage page = target != null ? downscale(canvas, target.width, target.height) : canvas;
+            PreparedImage prepared = prepareLossless(frameName(imagePath, frameIndex), page, options);
+            prepared.downsampled = target != null;
+            metrics.recordSince(ConversionMetrics.Stage.ENCODE, encodeStart);
+
+            // Disposal applies once the frame has been shown, before the next one is drawn
+            if ("restoreToBackgroundColor".equals(disposal)) {
+                Graphics2D clear = canvas.createGraphics();
+                try {
+                    clear.setComposite(AlphaComposite.Clear);
+                    clear.fillRect(x, y, frame.getWidth(), frame.getHeight());
+                } finally {
+                    clear.dispose();
+                }
+            } else if (previous != null) {
+                canvas = previous;
+            }
+            return prepared;
+        }
+
+        private void open() throws IOException {
+            input = ImageIO.createImageInputStream(new File(imagePath));
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input)
+                    : Collections.emptyIterator();
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format: " + imagePath);
+            }
+            reader = readers.next();
+            // Frames are read in order, so the stream need not keep what has been read
+            reader.setInput(input, true, false);
+        }
+
+        private int canvasWidth() throws IOException {
+            IIOMetadataNode screen = logicalScreen();
+            return screen != null ? Integer.parseInt(screen.getAttribute("logicalScreenWidth")) : 0;
+        }
+
+        private int canvasHeight() throws IOException {
+            IIOMetadataNode screen = logicalScreen();
+            return screen != null ? Integer.parseInt(screen.getAttribute("logicalScreenHeight")) : 0;
+        }
+
+        private IIOMetadataNode logicalScreen() throws IOException {
+            IIOMetadata streamMetadata = reader.getStreamMetadata();
+            if (streamMetadata == null) {
+                return null;
+            }
+            return childNode((IIOMetadataNode) streamMetadata.getAsTree("javax_imageio_gif_stream_1.0"),
+                    "LogicalScreenDescriptor");
+        }
+
+        @Override
+        public void close() throws IOException {
+            canvas = null;
+            if (reader != null) {
+                reader.dispose();
+                reader = null;
+            }
+            if (input != null) {
+                input.close();
+                input = null;
+            }
+        }
+    }
+
+    private static IIOMetadataNode childNode(IIOMetadataNode parent, String name) {
+        NodeList nodes = parent.getElementsByTagName(name);
+        return nodes.getLength() > 0 ? (IIOMetadataNode) nodes.item(0) : null;
+    }
+
+    private static BufferedImage copy(BufferedImage image) {
+        BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), image.getType());
+        Graphics2D g = copy.createGraphics();
+        try {
+            g.drawImage(image, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return copy;
+    }
+
+    /**
+     * Estimates the heap needed to decode the image, from its header only.
+     * JPEGs and PNGs that will be passed through cost nothing, and subsampled reads only count the reduced size.
+     */
+    static long estimateDecodedBytes(String imagePath, ConversionOptions options) throws IOException {
+        String lowerCasePath = imagePath.toLowerCase();
+        if (lowerCasePath.endsWith(".jpg") || lowerCasePath.endsWith(".jpeg")) {
+            JpegHeader header = JpegHeader.parse(mapFile(imagePath));
+            if (header != null && header.unsupportedReason() == null
+                    && targetSize(header.width, header.height, options) == null) {
+                return 0;
+            }
+        }
+        if (lowerCasePath.endsWith(".png")) {
+            PngDecoder header = openPng(imagePath);
+            if (header != null) {
+                try {
+                    if (header.passthroughUnsupportedReason() == null
+                            && targetSize(header.width, header.height, options) == null) {
+                        // The compressed data is held until the page is written, copied unless it is one chunk
+                        return PngDecoder.imageDataCopyBytes(PngDecoder.imageDataChunks(mapFile(imagePath)));
+                    }
+                } finally {
+                    header.close();
+                }
+            }
+        }
+
+        try (ImageInputStream input = ImageIO.createImageInputStream(new File(imagePath))) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input)
+                    : Collections.emptyIterator();
+            if (!readers.hasNext()) {
+                return 0;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                long width = reader.getWidth(0);
+                long height = reader.getHeight(0);
+                Dimension target = targetSize((int) width, (int) height, options);
+                int factor = subsamplingFactor((int) width, (int) height, target);
+                width /= factor;
+                height /= factor;
+                // Decoded images are held as up to four bytes per pixel; larger ones are read in strips.
+                // Colour and alpha are then deflated by two streams whose buffers are bounded too.
+                return Math.min(width * height, ImageStrips.LARGE_IMAGE_PIXELS) * 4
+                        + ParallelDeflaterOutputStream.bufferedBytes(width * height * 3)
+                        + ParallelDeflaterOutputStream.bufferedBytes(width * height);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Returns the SHA-256 of the file contents as a hex string
+     */
+    static String contentHash(String imagePath) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        digest.update(mapFile(imagePath));
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Maps the whole file read-only. The mapping stays valid after the channel is closed
+     * and is released once the buffer is garbage collected.
+     */
+    private static ByteBuffer mapFile(String imagePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(imagePath), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Embeds the original DCT bytes unchanged, using only the frame header for image properties
+     */
+    private PreparedImage prepareJpegPassthrough(String imagePath, ByteBuffer data, JpegHeader header) {
+        PDColorSpace colorSpace;
+        switch (header.components) {
+            case 1:
+                colorSpace = PDDeviceGray.INSTANCE;
+                break;
+            case 3:
+                colorSpace = PDDeviceRGB.INSTANCE;
+                break;
+            default:
+                colorSpace = PDDeviceCMYK.INSTANCE;
+                break;
+        }
+
+        PreparedImage image = new PreparedImage(imagePath, data, COSName.DCT_DECODE,
+                header.width, header.height, 8, colorSpace, null);
+        if (header.components == 4 && header.adobe) {
+            // Adobe applications write CMYK JPEGs with inverted samples
+            image.decode = invertedDecode(4);
+        }
+        image.embedMethod = ConversionReport.EmbedMethod.PASSTHROUGH;
+        return image;
+    }
+
+    /**
+     * Embeds the zlib stream of the IDAT chunks unchanged, with the PNG predictor in /DecodeParms so
+     * the viewer undoes the row filters. Nothing is inflated or deflated.
+     */
+    private PreparedImage preparePngPassthrough(String imagePath, PngDecoder header) throws IOException {
+        PDColorSpace colorSpace;
+        switch (header.colorType) {
+            case PngDecoder.GRAY:
+                colorSpace = PDDeviceGray.INSTANCE;
+                break;
+            case PngDecoder.RGB:
+                colorSpace = PDDeviceRGB.INSTANCE;
+                break;
+            default: {
+                byte[] palette = header.getPalette();
+                COSArray indexed = new COSArray();
+                indexed.add(COSName.INDEXED);
+                indexed.add(COSName.DEVICERGB);
+                indexed.add(COSInteger.get(palette.length / 3 - 1));
+                indexed.add(new COSString(palette));
+                colorSpace = new PDIndexed(indexed);
+                break;
+            }
+        }
+
+        COSDictionary decodeParms = new COSDictionary();
+        // 15: PNG filters, chosen per row by the encoder
+        decodeParms.setInt(COSName.PREDICTOR, 15);
+        decodeParms.setInt(COSName.COLORS, header.getColors());
+        decodeParms.setInt(COSName.BITS_PER_COMPONENT, header.bitDepth);
+        decodeParms.setInt(COSName.COLUMNS, header.width);
+
+        ByteBuffer data = PngDecoder.imageData(PngDecoder.imageDataChunks(mapFile(imagePath)));
+        PreparedImage image = new PreparedImage(imagePath, data,
+                COSName.FLATE_DECODE, header.width, header.height, header.bitDepth, colorSpace, null);
+        image.decodeParms = decodeParms;
+        image.embedMethod = ConversionReport.EmbedMethod.PASSTHROUGH;
+        return image;
+    }
+
+    /**
+     * Opens a PNG up to its image data, or returns null if the file does not start like one
+     */
+    private static PngDecoder openPng(String imagePath) {
+        try {
+            return PngDecoder.open(imagePath);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static COSArray invertedDecode(int components) {
+        COSArray decode = new COSArray();
+        for (int i = 0; i < components; i++) {
+            decode.add(COSInteger.ONE);
+            decode.add(COSInteger.ZERO);
+        }
+        return decode;
+    }
+
+    /**
+     * Decodes one frame of the file, downsampled to the target DPI if it is larger.
+     * Large reductions are done by the reader through source subsampling, so the full
+     * resolution image is never held in memory.
+     */
+    private DecodedImage readImage(String imagePath, int frameIndex, ConversionOptions options) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new File(imagePath))) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input)
+                    : Collections.emptyIterator();
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format: " + imagePath);
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(frameIndex);
+                int height = reader.getHeight(frameIndex);
+                Dimension target = targetSize(width, height, options);
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                int factor = subsamplingFactor(width, height, target);
+                if (factor > 1) {
+                    param.setSourceSubsampling(factor, factor, 0, 0);
+                }
+
+                BufferedImage image = reader.read(frameIndex, param);
+                if (target == null) {
+                    return new DecodedImage(image, false);
+                }
+                return new DecodedImage(downscale(image, target.width, target.height), true);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Returns how many source pixels the reader can skip for each one decoded. Subsamples no further
+     * than the target size, the rest is done by smooth scaling.
+     */
+    static int subsamplingFactor(int width, int height, Dimension target) {
+        if (target == null) {
+            return 1;
+        }
+        return Math.max(1, Math.min(width / target.width, height / target.height));
+    }
+
+    /**
+     * Returns the pixel size that gives the target DPI at the size the image is drawn on its page,
+     * or null if the image is already at or below it
+     */
+    static Dimension targetSize(int width, int height, ConversionOptions options) {
+        if (options.getTargetDpi() <= 0) {
+            return null;
+        }
+
+        PDRectangle pageSize = ImageToPDFService.calculateOptimalPageSize(width, height);
+        ImageToPDFService.ImageDimensions drawn =
+                ImageToPDFService.calculateImageDimensions(width, height, pageSize);
+        double maxWidth = Math.ceil(drawn.scaledWidth / POINTS_PER_INCH * options.getTargetDpi());
+        double maxHeight = Math.ceil(drawn.scaledHeight / POINTS_PER_INCH * options.getTargetDpi());
+        if (width <= maxWidth && height <= maxHeight) {
+            return null;
+        }
+
+        double scale = Math.min(maxWidth / width, maxHeight / height);
+        return new Dimension(Math.max(1, (int) Math.round(width * scale)),
+                Math.max(1, (int) Math.round(height * scale)));
+    }
+
+    /**
+     * Scales down in repeated halving steps with bilinear filtering.
+     * Much faster than area-averaging and avoids the aliasing of a single bilinear step.
+     */
+    static BufferedImage downscale(BufferedImage image, int targetWidth, int targetHeight) {
+        int type;
+        if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            type = BufferedImage.TYPE_BYTE_GRAY;
+        } else if (image.getColorModel().hasAlpha()) {
+            type = BufferedImage.TYPE_INT_ARGB;
+        } else {
+            type = BufferedImage.TYPE_INT_RGB;
+        }
+
+        BufferedImage current = image;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        while (width != targetWidth || height != targetHeight) {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+
+            BufferedImage step = new BufferedImage(width, height, type);
+            Graphics2D g = step.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(current, 0, 0, width, height, null);
+            g.dispose();
+            current = step;
+        }
+        return current;
+    }
+
+    /**
+     * Re-encodes a decoded image as a baseline JPEG
+     */
+    private PreparedImage prepareJpeg(String imagePath, BufferedImage image, ConversionOptions options)
+            throws IOException {
+        if (image.getColorModel().hasAlpha()) {
+            return prepareLossless(imagePath, image, options);
+        }
+
+        boolean gray = image.getType() == BufferedImage.TYPE_BYTE_GRAY;
+        return new PreparedImage(imagePath, ByteBuffer.wrap(encodeJpeg(image, options.getJpegQuality())),
+                COSName.DCT_DECODE,
+                image.getWidth(), image.getHeight(), 8,
+                gray ? PDDeviceGray.INSTANCE : PDDeviceRGB.INSTANCE, null);
+    }
+
+    /**
+     * Encodes an opaque image as a baseline JPEG at the given quality
+     */
+    static byte[] encodeJpeg(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Encodes a decoded image as FlateDecode samples with an optional alpha soft mask
+     */
+    private PreparedImage prepareLossless(String imagePath, BufferedImage image, ConversionOptions options)
+            throws IOException {
+        try (LosslessEncoder encoder = new LosslessEncoder(image.getWidth(),
+                image.getType() == BufferedImage.TYPE_BYTE_GRAY, image.getColorModel().hasAlpha(),
+                options.getCompressionLevel())) {
+            encoder.write(image);
+            return encoder.finish(imagePath);
+        }
+    }
+
+    /**
+     * Deflates rows of pixels as 8-bit gray or RGB samples, with alpha split off into a soft mask.
+     * Rows may arrive in several strips, so a large image never has to be decoded whole, and large
+     * images are compressed on several threads.
+     */
+    private static final class LosslessEncoder implements Closeable {
+        private final int width;
+        private final boolean gray;
+        private final boolean hasAlpha;
+        private final ByteArrayOutputStream colorBytes = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream alphaBytes;
+        private final ParallelDeflaterOutputStream colorOut;
+        private final ParallelDeflaterOutputStream alphaOut;
+        private final int[] argbRow;
+        private final byte[] colorRow;
+        private final byte[] alphaRow;
+        private int height;
+
+        LosslessEncoder(int width, boolean gray, boolean hasAlpha, int compressionLevel) throws IOException {
+            this.width = width;
+            this.gray = gray;
+            this.hasAlpha = hasAlpha;
+            this.alphaBytes = hasAlpha ? new ByteArrayOutputStream() : null;
+            this.colorOut = new ParallelDeflaterOutputStream(colorBytes, compressionLevel);
+            this.alphaOut = hasAlpha ? new ParallelDeflaterOutputStream(alphaBytes, compressionLevel) : null;
+            this.argbRow = new int[width];
+            this.colorRow = new byte[width * (gray ? 1 : 3)];
+            this.alphaRow = hasAlpha ? new byte[width] : null;
+        }
+
+        /**
+         * Appends the rows of the image, which must be as wide as the encoder
+         */
+        void write(BufferedImage image) throws IOException {
+            if (image.getWidth() != width
+                    || gray && image.getType() != BufferedImage.TYPE_BYTE_GRAY) {
+                throw new IOException("Image strip does not match the rows before it");
+            }
+            for (int y = 0; y < image.getHeight(); y++) {
+                // A cancelled conversion interrupts its workers; stop between rows
+                if ((y & 63) == 0) {
+                    checkInterrupted();
+                }
+                if (gray) {
+                    image.getRaster().getDataElements(0, y, width, 1, colorRow);
+                } else {
+                    image.getRGB(0, y, width, 1, argbRow, 0, width);
+                    for (int x = 0, i = 0; x < width; x++) {
+                        int argb = argbRow[x];
+                        colorRow[i++] = (byte) (argb >> 16);
+                        colorRow[i++] = (byte) (argb >> 8);
+                        colorRow[i++] = (byte) argb;
+                        if (hasAlpha) {
+                            alphaRow[x] = (byte) (argb >>> 24);
+                        }
+                    }
+                }
+                colorOut.write(colorRow);
+                if (hasAlpha) {
+                    alphaOut.write(alphaRow);
+                }
+            }
+            height += image.getHeight();
+        }
+
+        /**
+         * Completes the streams and returns the image made of every row written
+         */
+        PreparedImage finish(String imagePath) throws IOException {
+            colorOut.finish();
+            PreparedImage softMask = null;
+            if (hasAlpha) {
+                alphaOut.finish();
+                softMask = new PreparedImage(imagePath, ByteBuffer.wrap(alphaBytes.toByteArray()),
+                        COSName.FLATE_DECODE, width, height, 8, PDDeviceGray.INSTANCE, null);
+            }
+            return new PreparedImage(imagePath, ByteBuffer.wrap(colorBytes.toByteArray()),
+                    COSName.FLATE_DECODE, width, height, 8, gray ? PDDeviceGray.INSTANCE : PDDeviceRGB.INSTANCE,
+                    softMask);
+        }
+
+        /**
+         * Stops compression still running for an encoding that was not finished
+         */
+        @Override
+        public void close() {
+            colorOut.cancel();
+            if (alphaOut != null) {
+                alphaOut.cancel();
+            }
+        }
+    }
+
+    private static void checkInterrupted() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Image preparation interrupted");
+        }
+    }
+
+    /**
+     * Decoded pixels and whether they were downsampled from the source
+     */
+    private static final class DecodedImage {
+        final BufferedImage image;
+        final boolean downsampled;
+
+        DecodedImage(BufferedImage image, boolean downsampled) {
+            this.image = image;
+            this.downsampled = downsampled;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.example;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * An image too large to decode at once, read as strips of whole rows at the size it is embedded.
+ * Only one strip of decoded pixels is held at a time, so scans and drawings of any size fit in a
+ * fixed amount of memory.
+ */
+abstract class ImageStrips implements Closeable {
+
+    // Images that decode to more pixels than this are read in strips
+    static final long LARGE_IMAGE_PIXELS = 4096L * 4096L;
+
+    // Decoded pixels per strip, 16 MB as ARGB
+    private static final int STRIP_PIXELS = 1 << 22;
+
+    private final int decodedWidth;
+    private final int decodedHeight;
+    private final Dimension target;
+    private final int rowsPerStrip;
+    private int nextRow;
+    private int nextTargetRow;
+
+    /**
+     * @param decodedWidth Width after source subsampling
+     * @param decodedHeight Height after source subsampling
+     * @param target Size the strips are scaled to, or null to embed them as decoded
+     */
+    ImageStrips(int decodedWidth, int decodedHeight, Dimension target) {
+        this.decodedWidth = decodedWidth;
+        this.decodedHeight = decodedHeight;
+        this.target = target;
+        this.rowsPerStrip = Math.max(1, STRIP_PIXELS / decodedWidth);
+    }
+
+    /**
+     * Opens the frame for reading in strips, or returns null if it is small enough to decode whole
+     */
+    static ImageStrips open(String imagePath, int frameIndex, ConversionOptions options) throws IOException {
+        int width;
+        int height;
+        String format;
+        try (ImageInputStream input = ImageIO.createImageInputStream(new File(imagePath))) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input)
+                    : Collections.emptyIterator();
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                width = reader.getWidth(frameIndex);
+                height = reader.getHeight(frameIndex);
+                format = reader.getFormatName();
+            } finally {
+                reader.dispose();
+            }
+        }
+
+        Dimension target = ImagePreparer.targetSize(width, height, options);
+        int factor = ImagePreparer.subsamplingFactor(width, height, target);
+        int decodedWidth = ceilDiv(width, factor);
+        int decodedHeight = ceilDiv(height, factor);
+        if ((long) decodedWidth * decodedHeight <= LARGE_IMAGE_PIXELS) {
+            return null;
+        }
+
+        if ("png".equalsIgnoreCase(format)) {
+            PngDecoder png = PngDecoder.open(imagePath);
+            if (!png.interlaced) {
+                return new PngStrips(png, factor, decodedWidth, decodedHeight, target);
+            }
+            // Interlaced rows only complete in the last pass; decode regions through ImageIO instead
+            png.close();
+        }
+        return new RegionStrips(imagePath, frameIndex, width, height, factor, decodedWidth, decodedHeight, target);
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    int getWidth() {
+        return target != null ? target.width : decodedWidth;
+    }
+
+    int getHeight() {
+        return target != null ? target.height : decodedHeight;
+    }
+
+    boolean isDownsampled() {
+        return target != null;
+    }
+
+    /**
+     * Returns the next strip at the embedded size, or null once every row has been read
+     */
+    BufferedImage next() throws IOException {
+        while (nextRow < decodedHeight) {
+            int rows = Math.min(rowsPerStrip, decodedHeight - nextRow);
+            BufferedImage strip = readRows(nextRow, rows);
+            nextRow += rows;
+            if (target == null) {
+                return strip;
+            }
+
+            // Each strip is scaled to its share of the target rows
+            int targetEnd = (int) Math.round((double) nextRow * target.height / decodedHeight);
+            int targetRows = targetEnd - nextTargetRow;
+            nextTargetRow = targetEnd;
+            if (targetRows > 0) {
+                return ImagePreparer.downscale(strip, target.width, targetRows);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decodes rows of the subsampled image
+     */
+    protected abstract BufferedImage readRows(int firstRow, int rows) throws IOException;
+
+    /**
+     * Reads strips as source regions through ImageIO. Efficient for striped and tiled TIFFs, whose
+     * reader only decodes the strips or tiles a region touches.
+     */
+    private static final class RegionStrips extends ImageStrips {
+        private final ImageInputStream input;
+        private final ImageReader reader;
+        private final int frameIndex;
+        private final int sourceWidth;
+        private final int sourceHeight;
+        private final int factor;
+
+        RegionStrips(String imagePath, int frameIndex, int sourceWidth, int sourceHeight, int factor,
+                     int decodedWidth, int decodedHeight, Dimension target) throws IOException {
+            super(decodedWidth, decodedHeight, target);
+            this.frameIndex = frameIndex;
+            this.sourceWidth = sourceWidth;
+            this.sourceHeight = sourceHeight;
+            this.factor = factor;
+            this.input = ImageIO.createImageInputStream(new File(imagePath));
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input)
+                    : Collections.emptyIterator();
+            if (!readers.hasNext()) {
+                if (input != null) {
+                    input.close();
+                }
+                throw new IOException("Unsupported image format: " + imagePath);
+            }
+            this.reader = readers.next();
+            // Each strip seeks back to the image data
+            reader.setInput(input, false, true);
+        }
+
+        @Override
+        protected BufferedImage readRows(int firstRow, int rows) throws IOException {
+            int sourceY = firstRow * factor;
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceRegion(new Rectangle(0, sourceY, sourceWidth,
+                    Math.min(rows * factor, sourceHeight - sourceY)));
+            if (factor > 1) {
+                param.setSourceSubsampling(factor, factor, 0, 0);
+            }
+            return reader.read(frameIndex, param);
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.dispose();
+            input.close();
+        }
+    }
+
+    /**
+     * Reads strips from a PNG in one pass. Rows between subsampled ones are still decoded, since
+     * each row is filtered against the one above it.
+     */
+    private static final class PngStrips extends ImageStrips {
+        private final PngDecoder png;
+        private final int factor;
+        private final int decodedWidth;
+
+        PngStrips(PngDecoder png, int factor, int decodedWidth, int decodedHeight, Dimension target) {
+            super(decodedWidth, decodedHeight, target);
+            this.png = png;
+            this.factor = factor;
+            this.decodedWidth = decodedWidth;
+        }
+
+        @Override
+        protected BufferedImage readRows(int firstRow, int rows) throws IOException {
+            boolean gray = png.isGray();
+            BufferedImage strip = new BufferedImage(decodedWidth, rows, gray ? BufferedImage.TYPE_BYTE_GRAY
+                    : png.hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            byte[] grayRow = gray ? new byte[decodedWidth] : null;
+            int[] argbRow = gray ? null : new int[decodedWidth];
+
+            for (int y = 0; y < rows; y++) {
+                int sourceRow = (firstRow + y) * factor;
+                byte[] row;
+                do {
+                    row = png.nextRow();
+                } while (png.getRowIndex() <= sourceRow);
+
+                if (gray) {
+                    png.toGray(row, grayRow, factor);
+                    strip.getRaster().setDataElements(0, y, decodedWidth, 1, grayRow);
+                } else {
+                    png.toArgb(row, argbRow, factor);
+                    strip.setRGB(0, y, decodedWidth, 1, argbRow, 0, decodedWidth);
+                }
+            }
+            return strip;
+        }
+
+        @Override
+        public void close() throws IOException {
+            png.close();
+        }
+    }
+}
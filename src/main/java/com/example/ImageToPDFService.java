@@ -1,15 +1,40 @@
 package com.example;
 
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessStreamCache;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Core service class for converting images to PDF
@@ -21,48 +46,563 @@ public class ImageToPDFService {
             ".jpg", ".jpeg", ".png", ".gif", ".bmp", ".tiff", ".tif"
     };
 
+    // Stands in for the preparation of an image once its XObject is in the document
+    private static final CompletableFuture<PreparedImage> EMBEDDED = CompletableFuture.completedFuture(null);
+
+    private final ImagePreparer imagePreparer = new ImagePreparer();
+    private final ConversionMetrics metrics = ConversionMetrics.getDefault();
+
     /**
      * Converts multiple images into a single PDF document
      * @param imagePaths List of image file paths
      * @param outputPath Output PDF file path
+     * @return how each image was embedded
+     * @throws IOException if there's an error processing files
+     */
+    public ConversionReport convertImagesToPDF(List<String> imagePaths, String outputPath) throws IOException {
+        return convertImagesToPDF(imagePaths, outputPath, new ConversionOptions());
+    }
+
+    /**
+     * Converts multiple images into a single PDF document.
+     * Images are loaded and encoded on a worker pool while pages are added in order.
+     * @param imagePaths List of image file paths
+     * @param outputPath Output PDF file path
+     * @param options Conversion tuning options
+     * @return how each image was embedded
      * @throws IOException if there's an error processing files
      */
-    public void convertImagesToPDF(List<String> imagePaths, String outputPath) throws IOException {
-        try (PDDocument document = new PDDocument()) {
+    public ConversionReport convertImagesToPDF(List<String> imagePaths, String outputPath,
+                                               ConversionOptions options) throws IOException {
+        return convertImagesToPDF(imagePaths, outputPath, options, null, null);
+    }
+
+    /**
+     * Converts multiple images into a single PDF document, reporting progress and allowing cancellation.
+     * A cancelled conversion deletes the partially written output.
+     * @param imagePaths List of image file paths
+     * @param outputPath Output PDF file path
+     * @param options Conversion tuning options
+     * @param listener Receives per-page and per-stage progress, or null
+     * @param cancellation Token that stops the conversion, or null
+     * @return how each image was embedded
+     * @throws CancellationToken.CancelledException if the conversion was cancelled
+     * @throws IOException if there's an error processing files
+     */
+    public ConversionReport convertImagesToPDF(List<String> imagePaths, String outputPath,
+                                               ConversionOptions options, ConversionListener listener,
+                                               CancellationToken cancellation) throws IOException {
+        try (ConversionSession session = new ConversionSession(options, listener, cancellation, imagePaths.size())) {
+            for (String imagePath : imagePaths) {
+                session.addImage(imagePath);
+            }
+            return session.finish(outputPath);
+        }
+    }
+
+    /**
+     * Converts multiple images into a single PDF document written straight to a stream.
+     * Nothing is written to the stream until every page has been assembled, so a failed
+     * conversion leaves the stream untouched. The stream is not closed.
+     * @param imagePaths List of image file paths
+     * @param output Stream that receives the PDF bytes
+     * @param options Conversion tuning options
+     * @return how each image was embedded
+     * @throws IOException if there's an error processing files or writing the stream
+     */
+    public ConversionReport convertImagesToPDF(List<String> imagePaths, OutputStream output,
+                                               ConversionOptions options) throws IOException {
+        return convertImagesToPDF(imagePaths, output, options, null, null);
+    }
 
+    /**
+     * Converts multiple images into a single PDF document written to a stream, reporting progress
+     * and allowing cancellation. The stream is not closed.
+     * @param imagePaths List of image file paths
+     * @param output Stream that receives the PDF bytes
+     * @param options Conversion tuning options
+     * @param listener Receives per-page and per-stage progress, or null
+     * @param cancellation Token that stops the conversion, or null
+     * @return how each image was embedded
+     * @throws CancellationToken.CancelledException if the conversion was cancelled
+     * @throws IOException if there's an error processing files or writing the stream
+     */
+    public ConversionReport convertImagesToPDF(List<String> imagePaths, OutputStream output,
+                                               ConversionOptions options, ConversionListener listener,
+                                               CancellationToken cancellation) throws IOException {
+        try (ConversionSession session = new ConversionSession(options, listener, cancellation, imagePaths.size())) {
             for (String imagePath : imagePaths) {
-                if (isValidImageFile(imagePath)) {
-                    addImageToDocument(document, imagePath);
-                    System.out.println("Added image: " + imagePath);
-                } else {
-                    System.err.println("Skipping unsupported file: " + imagePath);
+                session.addImage(imagePath);
+            }
+            return session.finish(output);
+        }
+    }
+
+    /**
+     * Adds images as new pages at the end of an existing PDF. The pages are appended to the file as an
+     * incremental update, so the cost depends on the new pages rather than on the size of the PDF.
+     * A cancelled or failed append leaves the PDF as it was.
+     * @param imagePaths List of image file paths
+     * @param pdfPath Existing PDF that receives the pages
+     * @param options Conversion tuning options
+     * @param listener Receives per-page and per-stage progress, or null
+     * @param cancellation Token that stops the conversion, or null
+     * @return how each image was embedded
+     * @throws CancellationToken.CancelledException if the conversion was cancelled
+     * @throws IOException if there's an error processing files or the PDF cannot be updated
+     */
+    public ConversionReport appendImagesToPDF(List<String> imagePaths, String pdfPath, ConversionOptions options,
+                                              ConversionListener listener, CancellationToken cancellation)
+            throws IOException {
+        try (IncrementalUpdate update = new IncrementalUpdate(new File(pdfPath), createStreamCache(options));
+             ConversionSession session = new ConversionSession(options, listener, cancellation, imagePaths.size(),
+                     update.getDocument())) {
+            for (String imagePath : imagePaths) {
+                session.addImage(imagePath);
+            }
+            return session.finish(update);
+        }
+    }
+
+    /**
+     * Starts a conversion whose images are supplied one at a time, e.g. while they are still
+     * being uploaded. Each image starts preparing as soon as it is added.
+     * @param options Conversion tuning options
+     * @return an open session; it must be closed even after {@code finish}
+     */
+    public ConversionSession openSession(ConversionOptions options) {
+        return openSession(options, null, null);
+    }
+
+    /**
+     * Starts an incremental conversion that reports progress and can be cancelled
+     * @param options Conversion tuning options
+     * @param listener Receives per-page and per-stage progress, or null
+     * @param cancellation Token that stops the conversion, or null
+     * @return an open session; it must be closed even after {@code finish}
+     */
+    public ConversionSession openSession(ConversionOptions options, ConversionListener listener,
+                                         CancellationToken cancellation) {
+        return new ConversionSession(options, listener, cancellation, -1);
+    }
+
+    /**
+     * Chooses where the document keeps its streams: on the heap, or on the heap up to
+     * the memory budget and in a scratch file beyond it
+     */
+    static RandomAccessStreamCache.StreamCacheCreateFunction createStreamCache(ConversionOptions options) {
+        if (options.getMemoryBudget() == ConversionOptions.UNLIMITED_MEMORY) {
+            return IOUtils.createMemoryOnlyStreamCache();
+        }
+        return MemoryUsageSetting.setupMixed(options.getMemoryBudget())
+                .setTempDir(options.getScratchDirectory())
+                .streamCache;
+    }
+
+    /**
+     * A conversion in progress. Images are prepared on a bounded worker pool and added as pages
+     * in the order they were supplied; at most {@code options.getReadAhead()} prepared images
+     * are held at any time. Not thread-safe: images must be added from one thread, although
+     * the cancellation token may be cancelled from any thread.
+     */
+    public class ConversionSession implements Closeable {
+
+        private final ConversionOptions options;
+        private final PDDocument document;
+        private final ConversionReport report = new ConversionReport();
+        private final ExecutorService executor;
+        private final Deque<PendingImage> pending = new ArrayDeque<>();
+
+        // Identical inputs are detected on the workers and share one XObject on the assembly thread
+        private final Map<String, CompletableFuture<PreparedImage>> contentIndex = new ConcurrentHashMap<>();
+        private final Map<String, PDImageXObject> embeddedImages = new HashMap<>();
+        private final List<Closeable> openAnimations = new ArrayList<>();
+        private boolean closed;
+
+        private final ConversionListener listener;
+        private final CancellationToken cancellation;
+        private final Runnable stopWorkers;
+        // Grows as multi-frame images turn out to hold more than one page
+        private int totalPages;
+
+        private ConversionSession(ConversionOptions options, ConversionListener listener,
+                                  CancellationToken cancellation, int totalImages) {
+            this(options, listener, cancellation, totalImages, new PDDocument(createStreamCache(options)));
+        }
+
+        /**
+         * @param document Document that receives the pages; closed with the session
+         */
+        private ConversionSession(ConversionOptions options, ConversionListener listener,
+                                  CancellationToken cancellation, int totalImages, PDDocument document) {
+            this.options = options;
+            this.listener = listener != null ? listener : new ConversionListener() {
+            };
+            this.cancellation = cancellation != null ? cancellation : new CancellationToken();
+            this.totalPages = totalImages;
+            this.document = document;
+            this.executor = createWorkerPool(options.getParallelism());
+            metrics.conversionStarted();
+
+            // Interrupt running workers and drop queued images right away, from the cancelling thread;
+            // the assembling thread notices at its next step
+            this.stopWorkers = () -> {
+                for (Runnable queued : executor.shutdownNow()) {
+                    ((Future<?>) queued).cancel(false);
+                }
+            };
+            this.cancellation.onCancel(stopWorkers);
+            this.listener.stageStarted(ConversionMetrics.Stage.DECODE);
+        }
+
+        /**
+         * Queues an image for the next page, or one page per frame of a multi-page TIFF or animated GIF.
+         * Pages whose images are ready are assembled right away; if the read-ahead window is full this
+         * waits for the oldest image first.
+         */
+        public void addImage(String imagePath) throws IOException {
+            if (!isValidImageFile(imagePath)) {
+                System.err.println("Skipping unsupported file: " + imagePath);
+                return;
+            }
+
+            try {
+                int frames = ImagePreparer.countFrames(imagePath);
+                if (frames > 1) {
+                    addFrames(imagePath, frames);
+                    return;
+                }
+                cancellation.throwIfCancelled();
+                while (pending.size() >= options.getReadAhead()) {
+                    assembleNext();
+                }
+                pending.add(new PendingImage(imagePath, submitPrepare(executor, imagePath, options, contentIndex)));
+
+                while (!pending.isEmpty() && pending.peek().future.isDone()) {
+                    assembleNext();
+                }
+            } catch (IOException | RuntimeException e) {
+                metrics.recordError(e);
+                throw e;
+            }
+        }
+
+        /**
+         * Queues one page per frame. Frames go through the same read-ahead window as separate images,
+         * so only a few decoded frames are held however many the file contains.
+         */
+        private void addFrames(String imagePath, int frames) throws IOException {
+            if (totalPages >= 0) {
+                totalPages += frames - 1;
+            }
+            ImagePreparer.AnimationFrames animation = null;
+            if (ImagePreparer.isAnimation(imagePath)) {
+                animation = imagePreparer.openAnimation(imagePath);
+                openAnimations.add(animation);
+            }
+
+            Future<PreparedImage> previous = null;
+            for (int frame = 0; frame < frames; frame++) {
+                cancellation.throwIfCancelled();
+                while (pending.size() >= options.getReadAhead()) {
+                    assembleNext();
+                }
+                previous = submitPrepareFrame(executor, imagePath, frame, frames, options, animation, previous);
+                pending.add(new PendingImage(ImagePreparer.frameName(imagePath, frame), previous));
+
+                while (!pending.isEmpty() && pending.peek().future.isDone()) {
+                    assembleNext();
+                }
+            }
+        }
+
+        /**
+         * Adds the remaining pages and saves the document to a file
+         */
+        public ConversionReport finish(String outputPath) throws IOException {
+            // Written next to the output and moved into place, so a failed conversion leaves no broken PDF
+            File outputFile = new File(outputPath);
+            File partial = new File(outputFile.getAbsoluteFile().getParentFile(), "." + outputFile.getName() + ".part");
+            try {
+                try (OutputStream output = new BufferedOutputStream(new FileOutputStream(partial))) {
+                    finish(output);
                 }
+                Files.move(partial.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(partial.toPath());
             }
+            System.out.println("PDF created successfully: " + outputPath + " - " + report);
+            return report;
+        }
+
+        /**
+         * Adds the remaining pages and saves the document to a stream, which is not closed
+         */
+        public ConversionReport finish(OutputStream output) throws IOException {
+            try {
+                assembleRemaining();
+                cancellation.throwIfCancelled();
+                listener.stageStarted(ConversionMetrics.Stage.SAVE);
+                long saveStart = System.nanoTime();
+                CountingOutputStream counted = new CountingOutputStream(output);
+                document.save(new CancellableOutputStream(counted, cancellation));
+                metrics.recordSince(ConversionMetrics.Stage.SAVE, saveStart);
+                metrics.addBytesOut(counted.getByteCount());
+            } catch (IOException | RuntimeException e) {
+                metrics.recordError(e);
+                throw e;
+            }
+            return report;
+        }
+
+        /**
+         * Adds the remaining pages and appends them to the PDF the document was loaded from
+         */
+        private ConversionReport finish(IncrementalUpdate update) throws IOException {
+            try {
+                assembleRemaining();
+                listener.stageStarted(ConversionMetrics.Stage.SAVE);
+                long saveStart = System.nanoTime();
+                long appended = update.commit(cancellation);
+                metrics.recordSince(ConversionMetrics.Stage.SAVE, saveStart);
+                metrics.addBytesOut(appended);
+                System.out.println("Appended " + report.getEntries().size() + " page(s), " + appended + " bytes - "
+                        + report);
+            } catch (IOException | RuntimeException e) {
+                metrics.recordError(e);
+                throw e;
+            }
+            return report;
+        }
+
+        /**
+         * Adds the pages of every image queued so far, waiting for them to be prepared
+         */
+        public void assembleQueued() throws IOException {
+            try {
+                while (!pending.isEmpty()) {
+                    assembleNext();
+                }
+            } catch (IOException | RuntimeException e) {
+                metrics.recordError(e);
+                throw e;
+            }
+        }
 
-            if (document.getNumberOfPages() == 0) {
+        private void assembleRemaining() throws IOException {
+            while (!pending.isEmpty()) {
+                assembleNext();
+            }
+            if (report.getEntries().isEmpty()) {
                 throw new IOException("No valid images found to convert");
             }
+        }
+
+        private void assembleNext() throws IOException {
+            PendingImage next = pending.poll();
+            PreparedImage image;
+            try {
+                image = awaitPrepared(next.future, next.imagePath);
+            } catch (IOException e) {
+                // Workers fail with interruptions once cancelled; report the cancellation instead
+                cancellation.throwIfCancelled();
+                throw e;
+            }
+            cancellation.throwIfCancelled();
+            long layoutStart = System.nanoTime();
+            addImageToDocument(document, image, embeddedImages);
+            if (image.contentHash != null) {
+                // Later copies reuse the XObject, so the prepared data need not be kept for them
+                contentIndex.replace(image.contentHash, EMBEDDED);
+            }
+            metrics.recordSince(ConversionMetrics.Stage.PAGE_LAYOUT, layoutStart);
+            metrics.pageAdded();
+            report.add(image);
+            listener.pageAdded(report.getEntries().size(), totalPages, image.sourcePath);
+        }
 
-            document.save(outputPath);
-            System.out.println("PDF created successfully: " + outputPath);
+        /**
+         * Stops outstanding work and releases the document
+         */
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            metrics.conversionFinished();
+            cancellation.removeOnCancel(stopWorkers);
+            executor.shutdownNow();
+            pending.clear();
+            for (Closeable animation : openAnimations) {
+                animation.close();
+            }
+            document.close();
         }
     }
 
     /**
-     * Adds a single image as a new page in the PDF document
+     * Fails the next write once the conversion is cancelled, so saving a large document stops early
      */
-    private void addImageToDocument(PDDocument document, String imagePath) throws IOException {
+    private static final class CancellableOutputStream extends FilterOutputStream {
+        private final CancellationToken cancellation;
+
+        CancellableOutputStream(OutputStream out, CancellationToken cancellation) {
+            super(out);
+            this.cancellation = cancellation;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            cancellation.throwIfCancelled();
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            cancellation.throwIfCancelled();
+            out.write(b, off, len);
+        }
+    }
+
+    /**
+     * An image handed to the worker pool, in page order
+     */
+    private static final class PendingImage {
+        final String imagePath;
+        final Future<PreparedImage> future;
+
+        PendingImage(String imagePath, Future<PreparedImage> future) {
+            this.imagePath = imagePath;
+            this.future = future;
+        }
+    }
+
+    private Future<PreparedImage> submitPrepare(ExecutorService executor, String imagePath,
+                                                ConversionOptions options,
+                                                Map<String, CompletableFuture<PreparedImage>> contentIndex) {
+        return executor.submit(() -> {
+            metrics.addBytesIn(new File(imagePath).length());
+            if (!options.isDeduplicate()) {
+                return imagePreparer.prepare(imagePath, options);
+            }
+
+            // Only the first copy to be hashed is decoded and encoded; it need not be the first page
+            String contentHash = ImagePreparer.contentHash(imagePath);
+            CompletableFuture<PreparedImage> claim = new CompletableFuture<>();
+            CompletableFuture<PreparedImage> original = contentIndex.putIfAbsent(contentHash, claim);
+            if (original != null) {
+                return PreparedImage.duplicateOf(imagePath, contentHash, original);
+            }
+            try {
+                PreparedImage image = imagePreparer.prepare(imagePath, options);
+                image.contentHash = contentHash;
+                claim.complete(image);
+                return image;
+            } catch (Throwable e) {
+                claim.completeExceptionally(e);
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Prepares one frame of a multi-frame image. TIFF frames are independent and are prepared in
+     * parallel; GIF frames are composited in order, each task waiting for the one before it, which
+     * was queued first and so is already running or done.
+     */
+    private Future<PreparedImage> submitPrepareFrame(ExecutorService executor, String imagePath, int frame,
+                                                     int frames, ConversionOptions options,
+                                                     ImagePreparer.AnimationFrames animation,
+                                                     Future<PreparedImage> previous) {
+        return executor.submit(() -> {
+            if (frame == 0) {
+                metrics.addBytesIn(new File(imagePath).length());
+            }
+            if (animation == null) {
+                return imagePreparer.prepareFrame(imagePath, frame, options);
+            }
+            if (previous != null) {
+                previous.get();
+            }
+            try {
+                return animation.next(options);
+            } finally {
+                if (frame == frames - 1) {
+                    animation.close();
+                }
+            }
+        });
+    }
+
+    private PreparedImage awaitPrepared(Future<PreparedImage> future, String imagePath) throws IOException {
         try {
-            // Load the image
-            PDImageXObject image = PDImageXObject.createFromFile(imagePath, document);
+            return future.get();
+        } catch (CancellationException e) {
+            // Only a cancelled conversion drops queued images
+            throw new CancellationToken.CancelledException();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Conversion interrupted");
+        } catch (ExecutionException e) {
+            System.err.println("Failed to process image: " + imagePath);
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to process image: " + imagePath, cause);
+        }
+    }
+
+    private static ExecutorService createWorkerPool(int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "image-prepare-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Adds a single prepared image as a new page in the PDF document
+     */
+    void addImageToDocument(PDDocument document, PreparedImage prepared) throws IOException {
+        addImageToDocument(document, prepared, new HashMap<>());
+    }
+
+    /**
+     * Adds a single prepared image as a new page, reusing the XObject of an identical earlier image
+     * @param embeddedImages XObjects already in the document, by content hash
+     */
+    private void addImageToDocument(PDDocument document, PreparedImage prepared,
+                                    Map<String, PDImageXObject> embeddedImages) throws IOException {
+        try {
+            // Attach the encoded image to the document, or share an identical one. The first page
+            // assembled with a content hash embeds it, whichever copy was prepared.
+            PDImageXObject image = prepared.contentHash != null ? embeddedImages.get(prepared.contentHash) : null;
+            if (image == null) {
+                PreparedImage data = prepared;
+                if (prepared.isDuplicate()) {
+                    data = awaitPrepared(prepared.original, prepared.sourcePath);
+                    prepared.embedMethod = data.embedMethod;
+                    prepared.fallbackReason = data.fallbackReason;
+                    prepared.downsampled = data.downsampled;
+                }
+                image = data.toXObject(document);
+                if (prepared.contentHash != null) {
+                    embeddedImages.put(prepared.contentHash, image);
+                }
+            } else {
+                prepared.embedMethod = ConversionReport.EmbedMethod.REUSED;
+            }
 
             // Calculate page size and scaling
-            PDRectangle pageSize = calculateOptimalPageSize(image);
+            PDRectangle pageSize = calculateOptimalPageSize(image.getWidth(), image.getHeight());
             PDPage page = new PDPage(pageSize);
             document.addPage(page);
 
             // Calculate image position and scaling
-            ImageDimensions dimensions = calculateImageDimensions(image, pageSize);
+            ImageDimensions dimensions = calculateImageDimensions(image.getWidth(), image.getHeight(), pageSize);
 
             // Draw the image on the page
             try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
@@ -74,7 +614,7 @@ public class ImageToPDFService {
             }
 
         } catch (IOException e) {
-            System.err.println("Failed to process image: " + imagePath);
+            System.err.println("Failed to process image: " + prepared.sourcePath);
             throw e;
         }
     }
@@ -82,10 +622,7 @@ public class ImageToPDFService {
     /**
      * Calculates optimal page size based on image dimensions
      */
-    private PDRectangle calculateOptimalPageSize(PDImageXObject image) {
-        int imageWidth = image.getWidth();
-        int imageHeight = image.getHeight();
-
+    static PDRectangle calculateOptimalPageSize(int imageWidth, int imageHeight) {
         // Use A4 as default, but adjust if image has different aspect ratio
         if (imageWidth > imageHeight) {
             // Landscape orientation
@@ -99,9 +636,7 @@ public class ImageToPDFService {
     /**
      * Calculates image dimensions and position for optimal fitting
      */
-    private ImageDimensions calculateImageDimensions(PDImageXObject image, PDRectangle pageSize) {
-        int originalWidth = image.getWidth();
-        int originalHeight = image.getHeight();
+    static ImageDimensions calculateImageDimensions(int originalWidth, int originalHeight, PDRectangle pageSize) {
         float pageWidth = pageSize.getWidth();
         float pageHeight = pageSize.getHeight();
 
@@ -134,7 +669,7 @@ public class ImageToPDFService {
     /**
      * Helper class to store image dimensions and position
      */
-    private static class ImageDimensions {
+    static class ImageDimensions {
         final float x, y, scaledWidth, scaledHeight;
 
         ImageDimensions(float x, float y, float scaledWidth, float scaledHeight) {
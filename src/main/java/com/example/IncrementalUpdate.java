@@ -0,0 +1,134 @@
+package com.example;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadView;
+import org.apache.pdfbox.io.RandomAccessStreamCache;
+import org.apache.pdfbox.pdfwriter.COSWriter;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An existing PDF opened for changes that are saved as an incremental update: the changed objects,
+ * a cross-reference section and a trailer are appended to the file, and the original bytes are
+ * neither rewritten nor read again. Objects changed after loading are tracked by PDFBox.
+ */
+final class IncrementalUpdate implements Closeable {
+
+    private final File pdfFile;
+    private final long originalLength;
+    private final PDDocument document;
+
+    /**
+     * @param pdfFile PDF to update in place
+     * @param streamCache Where new streams are kept until they are written
+     */
+    IncrementalUpdate(File pdfFile, RandomAccessStreamCache.StreamCacheCreateFunction streamCache)
+            throws IOException {
+        this.pdfFile = pdfFile;
+        this.originalLength = pdfFile.length();
+        this.document = Loader.loadPDF(pdfFile, null, null, null, streamCache);
+        if (document.isEncrypted()) {
+            document.close();
+            throw new IOException("Encrypted PDFs cannot be updated: " + pdfFile);
+        }
+    }
+
+    PDDocument getDocument() {
+        return document;
+    }
+
+    /**
+     * Appends the changes to the file. If writing fails the file is truncated back to its original length.
+     * @return number of bytes appended
+     */
+    long commit(CancellationToken cancellation) throws IOException {
+        cancellation.throwIfCancelled();
+        if (pdfFile.length() != originalLength) {
+            throw new IOException("PDF was modified while it was being updated: " + pdfFile);
+        }
+
+        try (FileChannel channel = FileChannel.open(pdfFile.toPath(), StandardOpenOption.WRITE)) {
+            try {
+                // The writer copies its input ahead of the update; an input that only reports the original
+                // length gives correct offsets while the update alone goes straight to the end of the file.
+                // PDFBox still gathers the update in memory once before writing it.
+                channel.position(originalLength);
+                new COSWriter(Channels.newOutputStream(channel), new OriginalLength(originalLength)).write(document);
+                cancellation.throwIfCancelled();
+                channel.force(true);
+                return channel.size() - originalLength;
+            } catch (IOException | RuntimeException e) {
+                channel.truncate(originalLength);
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        document.close();
+    }
+
+    /**
+     * Stands in for the original file: reports its length and reads as empty
+     */
+    private static final class OriginalLength implements RandomAccessRead {
+        private final long length;
+        private boolean closed;
+
+        OriginalLength(long length) {
+            this.length = length;
+        }
+
+        @Override
+        public int read() {
+            return -1;
+        }
+
+        @Override
+        public int read(byte[] b, int offset, int length) {
+            return -1;
+        }
+
+        @Override
+        public long getPosition() {
+            return length;
+        }
+
+        @Override
+        public void seek(long position) {
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public boolean isEOF() {
+            return true;
+        }
+
+        @Override
+        public RandomAccessReadView createView(long startPosition, long streamLength) throws IOException {
+            throw new IOException("The original document is not readable here");
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Frame header of a baseline or progressive JPEG, read from the SOF marker without decoding pixels
+ */
+final class JpegHeader {
+
+    final int frameMarker;
+    final int precision;
+    final int width;
+    final int height;
+    final int components;
+    final boolean adobe;
+
+    private JpegHeader(int frameMarker, int precision, int width, int height, int components, boolean adobe) {
+        this.frameMarker = frameMarker;
+        this.precision = precision;
+        this.width = width;
+        this.height = height;
+        this.components = components;
+        this.adobe = adobe;
+    }
+
+    /**
+     * Walks the marker segments up to the first SOF marker
+     * @param data JPEG file contents; the buffer position is not modified
+     * @return the frame header, or null if the data is not a JPEG with a readable frame header
+     */
+    static JpegHeader parse(ByteBuffer data) {
+        ByteBuffer buffer = data.duplicate();
+        int limit = buffer.limit();
+        if (limit < 4 || (buffer.get(0) & 0xFF) != 0xFF || (buffer.get(1) & 0xFF) != 0xD8) {
+            return null;
+        }
+
+        boolean adobe = false;
+        int offset = 2;
+        while (offset + 4 <= limit) {
+            if ((buffer.get(offset) & 0xFF) != 0xFF) {
+                return null;
+            }
+            int marker = buffer.get(offset + 1) & 0xFF;
+            if (marker == 0xFF) {
+                // Fill byte before a marker
+                offset++;
+                continue;
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                // Standalone markers carry no length
+                offset += 2;
+                continue;
+            }
+
+            int length = buffer.getShort(offset + 2) & 0xFFFF;
+            int segment = offset + 4;
+            if (length < 2 || offset + 2 + length > limit) {
+                return null;
+            }
+
+            if (marker == 0xEE && length >= 7
+                    && buffer.get(segment) == 'A' && buffer.get(segment + 1) == 'd'
+                    && buffer.get(segment + 2) == 'o' && buffer.get(segment + 3) == 'b'
+                    && buffer.get(segment + 4) == 'e') {
+                adobe = true;
+            } else if (isStartOfFrame(marker)) {
+                if (length < 8) {
+                    return null;
+                }
+                int precision = buffer.get(segment) & 0xFF;
+                int height = buffer.getShort(segment + 1) & 0xFFFF;
+                int width = buffer.getShort(segment + 3) & 0xFFFF;
+                int components = buffer.get(segment + 5) & 0xFF;
+                return new JpegHeader(marker, precision, width, height, components, adobe);
+            } else if (marker == 0xDA || marker == 0xD9) {
+                // Start of scan or end of image before any frame header
+                return null;
+            }
+            offset += 2 + length;
+        }
+        return null;
+    }
+
+    /**
+     * Returns why the JPEG cannot be embedded unchanged as a DCTDecode stream, or null if it can
+     */
+    String unsupportedReason() {
+        if (frameMarker != 0xC0 && frameMarker != 0xC1 && frameMarker != 0xC2) {
+            return "unsupported JPEG coding process SOF" + (frameMarker - 0xC0);
+        }
+        if (precision != 8) {
+            return precision + "-bit JPEG samples";
+        }
+        if (width == 0 || height == 0) {
+            return "image height defined by DNL marker";
+        }
+        if (components != 1 && components != 3 && components != 4) {
+            return components + " colour components";
+        }
+        return null;
+    }
+
+    private static boolean isStartOfFrame(int marker) {
+        // SOF0-SOF15, excluding DHT (C4), JPG (C8) and DAC (CC)
+        return marker >= 0xC0 && marker <= 0xCF
+                && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+}
@@ -1,7 +1,18 @@
 package com.example;
 
+import java.util.Arrays;
+
+/**
+ * Command line entry point for headless conversions: a one-off batch, see {@link BatchConverter},
+ * or {@code watch} to run as a hot-folder daemon, see {@link HotFolderDaemon}
+ */
 public class Main {
     public static void main(String[] args) {
-        System.out.println("Hello, World!");
+        // Servers running nightly batches usually have no display
+        System.setProperty("java.awt.headless", "true");
+        if (args.length > 0 && args[0].equals("watch")) {
+            System.exit(HotFolderDaemon.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        System.exit(BatchConverter.run(args));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,268 @@
+package com.example;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import java.awt.*;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dialog for combining several PDFs into one, in a user-chosen order
+ */
+class MergePDFDialog extends JDialog {
+
+    private final PDFMergeService mergeService;
+    private DefaultListModel<String> pdfListModel;
+    private JList<String> pdfList;
+    private JLabel statusLabel;
+    private JProgressBar progressBar;
+    private JButton mergeButton;
+    // Token of the merge in progress, null when idle; the merge button cancels it
+    private CancellationToken activeMerge;
+
+    private static final Color PRIMARY_COLOR = new Color(155, 89, 182);
+    private static final Color BACKGROUND_COLOR = new Color(248, 249, 250);
+    private static final Color CARD_COLOR = Color.WHITE;
+    private static final Color TEXT_COLOR = new Color(52, 73, 94);
+    private static final Color LIGHT_TEXT_COLOR = new Color(127, 140, 141);
+
+    public MergePDFDialog(Frame parent, PDFMergeService mergeService) {
+        super(parent, "Merge PDFs", true);
+        this.mergeService = mergeService;
+
+        initializeComponents();
+        setupLayout();
+
+        setSize(800, 600);
+        setLocationRelativeTo(parent);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+    }
+
+    private void initializeComponents() {
+        pdfListModel = new DefaultListModel<>();
+        pdfList = new JList<>(pdfListModel);
+        pdfList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        pdfList.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+
+        statusLabel = new JLabel("Add the PDFs to merge, in order");
+        statusLabel.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        statusLabel.setForeground(TEXT_COLOR);
+
+        progressBar = new JProgressBar();
+        progressBar.setVisible(false);
+        progressBar.setStringPainted(true);
+
+        mergeButton = new JButton("Merge PDFs");
+        mergeButton.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        mergeButton.setBackground(PRIMARY_COLOR);
+        mergeButton.setForeground(Color.WHITE);
+        mergeButton.setBorder(new EmptyBorder(12, 30, 12, 30));
+        mergeButton.setFocusPainted(false);
+        mergeButton.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        mergeButton.addActionListener(e -> merge());
+    }
+
+    private void setupLayout() {
+        setLayout(new BorderLayout());
+        getContentPane().setBackground(BACKGROUND_COLOR);
+
+        // Header
+        JPanel headerPanel = new JPanel(new BorderLayout());
+        headerPanel.setBackground(CARD_COLOR);
+        headerPanel.setBorder(new EmptyBorder(25, 30, 25, 30));
+
+        JLabel titleLabel = new JLabel("Merge PDFs");
+        titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 20));
+        titleLabel.setForeground(TEXT_COLOR);
+
+        JLabel subtitleLabel = new JLabel("Combine PDF files into one document, in the order listed");
+        subtitleLabel.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        subtitleLabel.setForeground(LIGHT_TEXT_COLOR);
+
+        headerPanel.add(titleLabel, BorderLayout.NORTH);
+        headerPanel.add(subtitleLabel, BorderLayout.SOUTH);
+
+        // List and controls
+        JPanel centerPanel = new JPanel(new BorderLayout(15, 0));
+        centerPanel.setOpaque(false);
+        centerPanel.setBorder(new EmptyBorder(20, 30, 20, 30));
+
+        JScrollPane scrollPane = new JScrollPane(pdfList);
+        scrollPane.setBorder(BorderFactory.createLineBorder(new Color(220, 220, 220)));
+
+        JPanel buttonPanel = new JPanel(new GridLayout(0, 1, 0, 8));
+        buttonPanel.setOpaque(false);
+        buttonPanel.add(createButton("Add PDFs...", e -> addPdfs()));
+        buttonPanel.add(createButton("Remove", e -> removeSelected()));
+        buttonPanel.add(createButton("Move Up", e -> moveSelected(-1)));
+        buttonPanel.add(createButton("Move Down", e -> moveSelected(1)));
+        buttonPanel.add(createButton("Clear", e -> pdfListModel.clear()));
+
+        JPanel buttonColumn = new JPanel(new BorderLayout());
+        buttonColumn.setOpaque(false);
+        buttonColumn.add(buttonPanel, BorderLayout.NORTH);
+
+        centerPanel.add(scrollPane, BorderLayout.CENTER);
+        centerPanel.add(buttonColumn, BorderLayout.EAST);
+
+        // Footer
+        JPanel footerPanel = new JPanel(new BorderLayout());
+        footerPanel.setBackground(CARD_COLOR);
+        footerPanel.setBorder(new EmptyBorder(20, 30, 20, 30));
+
+        JPanel statusPanel = new JPanel(new BorderLayout(15, 0));
+        statusPanel.setOpaque(false);
+        statusPanel.setBorder(new EmptyBorder(0, 0, 15, 0));
+        statusPanel.add(statusLabel, BorderLayout.WEST);
+        statusPanel.add(progressBar, BorderLayout.CENTER);
+
+        footerPanel.add(statusPanel, BorderLayout.NORTH);
+        footerPanel.add(mergeButton, BorderLayout.SOUTH);
+
+        add(headerPanel, BorderLayout.NORTH);
+        add(centerPanel, BorderLayout.CENTER);
+        add(footerPanel, BorderLayout.SOUTH);
+    }
+
+    private JButton createButton(String text, ActionListener action) {
+        JButton button = new JButton(text);
+        button.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        button.setFocusPainted(false);
+        button.addActionListener(action);
+        return button;
+    }
+
+    private void addPdfs() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setMultiSelectionEnabled(true);
+        fileChooser.setFileFilter(new FileNameExtensionFilter("PDF files", "pdf"));
+        if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            for (File file : fileChooser.getSelectedFiles()) {
+                pdfListModel.addElement(file.getAbsolutePath());
+            }
+            updateStatus(pdfListModel.size() + " PDF(s) selected");
+        }
+    }
+
+    private void removeSelected() {
+        int index = pdfList.getSelectedIndex();
+        if (index >= 0) {
+            pdfListModel.remove(index);
+            updateStatus(pdfListModel.size() + " PDF(s) selected");
+        }
+    }
+
+    private void moveSelected(int offset) {
+        int index = pdfList.getSelectedIndex();
+        int target = index + offset;
+        if (index < 0 || target < 0 || target >= pdfListModel.size()) {
+            return;
+        }
+        String path = pdfListModel.remove(index);
+        pdfListModel.add(target, path);
+        pdfList.setSelectedIndex(target);
+    }
+
+    private void merge() {
+        if (activeMerge != null) {
+            activeMerge.cancel();
+            mergeButton.setEnabled(false);
+            updateStatus("Cancelling...");
+            return;
+        }
+
+        if (pdfListModel.size() < 2) {
+            JOptionPane.showMessageDialog(this,
+                    "Please add at least two PDFs to merge.",
+                    "Missing Input",
+                    JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setFileFilter(new FileNameExtensionFilter("PDF files", "pdf"));
+        fileChooser.setSelectedFile(new File("merged.pdf"));
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        String outputPath = fileChooser.getSelectedFile().getAbsolutePath();
+        if (!outputPath.toLowerCase().endsWith(".pdf")) {
+            outputPath += ".pdf";
+        }
+        String finalOutputPath = outputPath;
+
+        // Copied on the EDT; the model must not be read from the worker
+        List<String> inputPaths = new ArrayList<>();
+        for (int i = 0; i < pdfListModel.size(); i++) {
+            inputPaths.add(pdfListModel.get(i));
+        }
+
+        CancellationToken cancellation = new CancellationToken();
+        activeMerge = cancellation;
+        mergeButton.setText("Cancel");
+        progressBar.setValue(0);
+        progressBar.setVisible(true);
+        updateStatus("Merging PDFs...");
+
+        SwingWorker<Integer, Integer> worker = new SwingWorker<Integer, Integer>() {
+            @Override
+            protected Integer doInBackground() throws Exception {
+                ConversionListener listener = new ConversionListener() {
+                    @Override
+                    public void pageAdded(int pages, int totalImages, String imagePath) {
+                        publish(pages * 100 / totalImages);
+                    }
+                };
+                return mergeService.mergePDFs(inputPaths, finalOutputPath, listener, cancellation);
+            }
+
+            @Override
+            protected void process(List<Integer> chunks) {
+                progressBar.setValue(chunks.get(chunks.size() - 1));
+            }
+
+            @Override
+            protected void done() {
+                activeMerge = null;
+                mergeButton.setText("Merge PDFs");
+                mergeButton.setEnabled(true);
+                progressBar.setVisible(false);
+                if (cancellation.isCancelled()) {
+                    updateStatus("Merge cancelled");
+                    return;
+                }
+                try {
+                    int pages = get();
+                    updateStatus("Merged " + inputPaths.size() + " PDFs, " + pages + " page(s)");
+                    JOptionPane.showMessageDialog(MergePDFDialog.this,
+                            "PDF created successfully!\nSaved to: " + finalOutputPath,
+                            "Success",
+                            JOptionPane.INFORMATION_MESSAGE);
+                } catch (Exception e) {
+                    updateStatus("Error: " + e.getMessage());
+                    JOptionPane.showMessageDialog(MergePDFDialog.this,
+                            "Error merging PDFs: " + e.getMessage(),
+                            "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+
+        worker.execute();
+    }
+
+    private void updateStatus(String message) {
+        statusLabel.setText(message);
+    }
+
+    @Override
+    public void dispose() {
+        if (activeMerge != null) {
+            activeMerge.cancel();
+        }
+        super.dispose();
+    }
+}
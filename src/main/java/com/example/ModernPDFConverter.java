@@ -10,6 +10,7 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
@@ -21,6 +22,10 @@ import java.util.List;
 public class ModernPDFConverter extends JFrame {
 
     private ImageToPDFService pdfService;
+    private PDFToImagesService pdfToImagesService;
+    private PDFMergeService mergeService;
+    private PDFSplitService splitService;
+    private PDFRotateService rotateService;
     private JPanel mainPanel;
     private JPanel headerPanel;
     private JPanel contentPanel;
@@ -39,6 +44,10 @@ public class ModernPDFConverter extends JFrame {
 
     public ModernPDFConverter() {
         this.pdfService = new ImageToPDFService();
+        this.pdfToImagesService = new PDFToImagesService();
+        this.mergeService = new PDFMergeService();
+        this.splitService = new PDFSplitService();
+        this.rotateService = new PDFRotateService();
         
         initializeComponents();
         setupLayout();
@@ -180,13 +189,12 @@ public class ModernPDFConverter extends JFrame {
             this::showImageToPDFDialog
         ));
         
-        // Future tools (placeholders)
         gridPanel.add(createToolCard(
             "PDF to Images", 
-            "Extract images from PDF documents",
+            "Render PDF pages to PNG, JPEG or TIFF images",
             SECONDARY_COLOR,
             "🖼️",
-            this::showComingSoon
+            this::showPDFToImagesDialog
         ));
         
         gridPanel.add(createToolCard(
@@ -194,7 +202,7 @@ public class ModernPDFConverter extends JFrame {
             "Combine multiple PDF files into one",
             ACCENT_COLOR,
             "🔗",
-            this::showComingSoon
+            this::showMergeDialog
         ));
         
         gridPanel.add(createToolCard(
@@ -202,17 +210,19 @@ public class ModernPDFConverter extends JFrame {
             "Split PDF into multiple documents",
             new Color(231, 76, 60),
             "✂️",
-            this::showComingSoon
+            this::showSplitDialog
         ));
         
         gridPanel.add(createToolCard(
             "Compress PDF", 
-            "Reduce PDF file size without quality loss",
+            "Reduce PDF file size by recompressing images",
             new Color(243, 156, 18),
             "🗜️",
-            this::showComingSoon
+            this::showCompressDialog
         ));
         
+        // Future tools (placeholders)
+        
         gridPanel.add(createToolCard(
             "Protect PDF", 
             "Add password protection to PDF files",
@@ -234,7 +244,7 @@ public class ModernPDFConverter extends JFrame {
             "Rotate PDF pages to correct orientation",
             new Color(142, 68, 173),
             "🔄",
-            this::showComingSoon
+            this::showRotateDialog
         ));
         
         return gridPanel;
@@ -407,6 +417,31 @@ public class ModernPDFConverter extends JFrame {
         dialog.setVisible(true);
     }
 
+    private void showPDFToImagesDialog() {
+        PDFToImagesDialog dialog = new PDFToImagesDialog(this, pdfToImagesService);
+        dialog.setVisible(true);
+    }
+
+    private void showMergeDialog() {
+        MergePDFDialog dialog = new MergePDFDialog(this, mergeService);
+        dialog.setVisible(true);
+    }
+
+    private void showSplitDialog() {
+        SplitPDFDialog dialog = new SplitPDFDialog(this, splitService);
+        dialog.setVisible(true);
+    }
+
+    private void showCompressDialog() {
+        CompressPDFDialog dialog = new CompressPDFDialog(this);
+        dialog.setVisible(true);
+    }
+
+    private void showRotateDialog() {
+        RotatePDFDialog dialog = new RotatePDFDialog(this, rotateService);
+        dialog.setVisible(true);
+    }
+
     private void showComingSoon() {
         JOptionPane.showMessageDialog(
             this,
@@ -434,6 +469,14 @@ class ImageToPDFDialog extends JDialog {
     private JLabel statusLabel;
     private JProgressBar progressBar;
     private JButton convertButton;
+    private JSpinner memoryBudgetSpinner;
+    private ThumbnailCache thumbnailCache;
+    // Token of the conversion in progress, null when idle; the convert button cancels it
+    private CancellationToken activeConversion;
+
+    private static final int THUMBNAIL_SIZE = 48;
+    private static final long THUMBNAIL_CACHE_BYTES = 32L * 1024 * 1024;
+    private static final long THUMBNAIL_DISK_BYTES = 64L * 1024 * 1024;
     
     private static final Color PRIMARY_COLOR = new Color(52, 152, 219);
     private static final Color BACKGROUND_COLOR = new Color(248, 249, 250);
@@ -457,7 +500,16 @@ class ImageToPDFDialog extends JDialog {
     private void initializeComponents() {
         imageList = new JList<>(listModel);
         imageList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
-        imageList.setCellRenderer(new ModernListCellRenderer());
+
+        // Thumbnails are generated off the EDT; each finished one repaints the list
+        File thumbnailDir = new File(System.getProperty("java.io.tmpdir"), "image-to-pdf-thumbnails");
+        thumbnailCache = new ThumbnailCache(THUMBNAIL_SIZE, THUMBNAIL_CACHE_BYTES, thumbnailDir,
+                THUMBNAIL_DISK_BYTES, path -> SwingUtilities.invokeLater(imageList::repaint));
+        imageList.setCellRenderer(new ModernListCellRenderer(thumbnailCache));
+        // Fixed cell sizes keep the list from rendering every row just to measure it,
+        // which would also request a thumbnail for every image
+        imageList.setFixedCellHeight(THUMBNAIL_SIZE + 16);
+        imageList.setFixedCellWidth(300);
         imageList.setBackground(CARD_COLOR);
         imageList.setBorder(new EmptyBorder(10, 10, 10, 10));
         
@@ -469,6 +521,10 @@ class ImageToPDFDialog extends JDialog {
         progressBar.setVisible(false);
         progressBar.setStringPainted(true);
         
+        // Memory budget in MB, 0 keeps the whole document in memory
+        memoryBudgetSpinner = new JSpinner(new SpinnerNumberModel(0, 0, 65536, 64));
+        memoryBudgetSpinner.setToolTipText("Memory budget in MB before images spill to a temporary file (0 = unlimited)");
+
         convertButton = new JButton("Convert to PDF");
         convertButton.setFont(new Font("Segoe UI", Font.BOLD, 14));
         convertButton.setBackground(PRIMARY_COLOR);
@@ -527,6 +583,8 @@ class ImageToPDFDialog extends JDialog {
         JScrollPane scrollPane = new JScrollPane(imageList);
         scrollPane.setBorder(BorderFactory.createLineBorder(new Color(0, 0, 0, 20), 1));
         scrollPane.setBackground(CARD_COLOR);
+        // Rows that scroll out of view before their thumbnail is generated stop waiting for a thread
+        scrollPane.getViewport().addChangeListener(e -> cancelHiddenThumbnails());
         
         contentPanel.add(buttonsPanel, BorderLayout.NORTH);
         contentPanel.add(scrollPane, BorderLayout.CENTER);
@@ -540,6 +598,15 @@ class ImageToPDFDialog extends JDialog {
         statusPanel.setOpaque(false);
         statusPanel.add(statusLabel, BorderLayout.WEST);
         statusPanel.add(progressBar, BorderLayout.CENTER);
+
+        JPanel optionsPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 0));
+        optionsPanel.setOpaque(false);
+        JLabel memoryLabel = new JLabel("Memory budget (MB):");
+        memoryLabel.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        memoryLabel.setForeground(LIGHT_TEXT_COLOR);
+        optionsPanel.add(memoryLabel);
+        optionsPanel.add(memoryBudgetSpinner);
+        statusPanel.add(optionsPanel, BorderLayout.EAST);
         
         convertButton.addActionListener(this::convertToPDF);
         
@@ -601,6 +668,13 @@ class ImageToPDFDialog extends JDialog {
     }
 
     private void convertToPDF(ActionEvent e) {
+        if (activeConversion != null) {
+            activeConversion.cancel();
+            convertButton.setEnabled(false);
+            updateStatus("Cancelling...");
+            return;
+        }
+
         if (listModel.isEmpty()) {
             JOptionPane.showMessageDialog(this,
                     "Please add images before converting.",
@@ -621,43 +695,96 @@ class ImageToPDFDialog extends JDialog {
                 outputPath += ".pdf";
             }
 
-            convertInBackground(outputPath);
+            boolean append = false;
+            if (new File(outputPath).isFile()) {
+                Object[] choices = {"Append Pages", "Replace File", "Cancel"};
+                int choice = JOptionPane.showOptionDialog(this,
+                        "The PDF already exists. Append the images as new pages or replace it?",
+                        "PDF Exists",
+                        JOptionPane.YES_NO_CANCEL_OPTION,
+                        JOptionPane.QUESTION_MESSAGE,
+                        null, choices, choices[0]);
+                if (choice != JOptionPane.YES_OPTION && choice != JOptionPane.NO_OPTION) {
+                    return;
+                }
+                append = choice == JOptionPane.YES_OPTION;
+            }
+
+            convertInBackground(outputPath, append);
         }
     }
 
-    private void convertInBackground(String outputPath) {
-        convertButton.setEnabled(false);
+    private void convertInBackground(String outputPath, boolean append) {
+        CancellationToken cancellation = new CancellationToken();
+        activeConversion = cancellation;
+        convertButton.setText("Cancel");
+        progressBar.setValue(0);
+        progressBar.setString(null);
         progressBar.setVisible(true);
         updateStatus("Converting images to PDF...");
 
+        int budgetMB = (Integer) memoryBudgetSpinner.getValue();
+        ConversionOptions options = new ConversionOptions().setMemoryBudget(
+                budgetMB > 0 ? budgetMB * 1024L * 1024L : ConversionOptions.UNLIMITED_MEMORY);
+
+        // Copied on the EDT; the model must not be read from the worker thread
+        List<String> imagePaths = new ArrayList<>();
+        for (int i = 0; i < listModel.size(); i++) {
+            imagePaths.add(listModel.getElementAt(i));
+        }
+
         SwingWorker<Void, Integer> worker = new SwingWorker<Void, Integer>() {
             @Override
             protected Void doInBackground() throws Exception {
-                List<String> imagePaths = new ArrayList<>();
-                for (int i = 0; i < listModel.size(); i++) {
-                    imagePaths.add(listModel.getElementAt(i));
-                    publish((i + 1) * 100 / listModel.size());
+                // Pages fill the bar up to 95%, saving the document takes the rest
+                ConversionListener listener = new ConversionListener() {
+                    @Override
+                    public void pageAdded(int pages, int totalImages, String imagePath) {
+                        publish(pages * 95 / totalImages);
+                    }
+
+                    @Override
+                    public void stageStarted(ConversionMetrics.Stage stage) {
+                        if (stage == ConversionMetrics.Stage.SAVE) {
+                            publish(-1);
+                        }
+                    }
+                };
+                if (append) {
+                    pdfService.appendImagesToPDF(imagePaths, outputPath, options, listener, cancellation);
+                } else {
+                    pdfService.convertImagesToPDF(imagePaths, outputPath, options, listener, cancellation);
                 }
-
-                pdfService.convertImagesToPDF(imagePaths, outputPath);
                 return null;
             }
 
             @Override
             protected void process(List<Integer> chunks) {
                 int progress = chunks.get(chunks.size() - 1);
-                progressBar.setValue(progress);
+                if (progress < 0) {
+                    progressBar.setValue(95);
+                    progressBar.setString("Saving...");
+                } else {
+                    progressBar.setValue(progress);
+                }
             }
 
             @Override
             protected void done() {
+                activeConversion = null;
+                convertButton.setText("Convert to PDF");
                 convertButton.setEnabled(true);
                 progressBar.setVisible(false);
+                if (cancellation.isCancelled()) {
+                    updateStatus("Conversion cancelled");
+                    return;
+                }
                 try {
                     get();
-                    updateStatus("PDF created successfully!");
+                    String message = append ? "Pages appended successfully!" : "PDF created successfully!";
+                    updateStatus(message);
                     JOptionPane.showMessageDialog(ImageToPDFDialog.this,
-                            "PDF created successfully!\n" + outputPath,
+                            message + "\n" + outputPath,
                             "Success",
                             JOptionPane.INFORMATION_MESSAGE);
                 } catch (Exception e) {
@@ -677,7 +804,40 @@ class ImageToPDFDialog extends JDialog {
         statusLabel.setText(message);
     }
 
+    private void cancelHiddenThumbnails() {
+        int first = imageList.getFirstVisibleIndex();
+        int last = imageList.getLastVisibleIndex();
+        List<String> visible = new ArrayList<>();
+        for (int i = Math.max(0, first); i <= last; i++) {
+            visible.add(listModel.get(i));
+        }
+        thumbnailCache.cancelLoadsExcept(visible);
+    }
+
+    @Override
+    public void dispose() {
+        if (activeConversion != null) {
+            activeConversion.cancel();
+        }
+        thumbnailCache.close();
+        super.dispose();
+    }
+
     private static class ModernListCellRenderer extends DefaultListCellRenderer {
+
+        // Shared across calls: the renderer runs for every visible row on every repaint
+        private static final Font CELL_FONT = new Font("Segoe UI", Font.PLAIN, 13);
+        private static final EmptyBorder CELL_BORDER = new EmptyBorder(8, 12, 8, 12);
+        private static final Color SELECTED_BACKGROUND = new Color(52, 152, 219, 30);
+        private static final Color CELL_FOREGROUND = new Color(52, 73, 94);
+
+        private final ThumbnailCache thumbnailCache;
+        private final ThumbnailIcon icon = new ThumbnailIcon();
+
+        ModernListCellRenderer(ThumbnailCache thumbnailCache) {
+            this.thumbnailCache = thumbnailCache;
+        }
+
         @Override
         public Component getListCellRendererComponent(JList<?> list, Object value, int index,
                 boolean isSelected, boolean cellHasFocus) {
@@ -687,22 +847,57 @@ class ImageToPDFDialog extends JDialog {
             if (value instanceof String) {
                 String path = (String) value;
                 File file = new File(path);
-                setText("📄 " + file.getName());
+                setText(file.getName());
                 setToolTipText(path);
+                // Shows an empty frame until the thumbnail is ready
+                icon.image = thumbnailCache.get(path);
+                setIcon(icon);
+                setIconTextGap(12);
             }
             
-            setBorder(new EmptyBorder(8, 12, 8, 12));
-            setFont(new Font("Segoe UI", Font.PLAIN, 13));
+            setBorder(CELL_BORDER);
+            setFont(CELL_FONT);
             
             if (isSelected) {
-                setBackground(new Color(52, 152, 219, 30));
-                setForeground(new Color(52, 73, 94));
+                setBackground(SELECTED_BACKGROUND);
+                setForeground(CELL_FOREGROUND);
             } else {
                 setBackground(Color.WHITE);
-                setForeground(new Color(52, 73, 94));
+                setForeground(CELL_FOREGROUND);
             }
             
             return this;
         }
+
+        /**
+         * Fixed-size icon that draws a thumbnail centered, or a placeholder frame while it loads
+         */
+        private static class ThumbnailIcon implements Icon {
+            private static final Color PLACEHOLDER_COLOR = new Color(0, 0, 0, 20);
+
+            BufferedImage image;
+
+            @Override
+            public void paintIcon(Component c, Graphics g, int x, int y) {
+                if (image == null) {
+                    g.setColor(PLACEHOLDER_COLOR);
+                    g.drawRect(x, y, THUMBNAIL_SIZE - 1, THUMBNAIL_SIZE - 1);
+                    return;
+                }
+                g.drawImage(image,
+                        x + (THUMBNAIL_SIZE - image.getWidth()) / 2,
+                        y + (THUMBNAIL_SIZE - image.getHeight()) / 2, null);
+            }
+
+            @Override
+            public int getIconWidth() {
+                return THUMBNAIL_SIZE;
+            }
+
+            @Override
+            public int getIconHeight() {
+                return THUMBNAIL_SIZE;
+            }
+        }
     }
 }
@@ -0,0 +1,464 @@
+package com.example;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.contentstream.PDFStreamEngine;
+import org.apache.pdfbox.contentstream.operator.DrawObject;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.contentstream.operator.state.Concatenate;
+import org.apache.pdfbox.contentstream.operator.state.Restore;
+import org.apache.pdfbox.contentstream.operator.state.Save;
+import org.apache.pdfbox.contentstream.operator.state.SetGraphicsStateParameters;
+import org.apache.pdfbox.contentstream.operator.state.SetMatrix;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObjectKey;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdfwriter.compress.CompressParameters;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.color.PDIndexed;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.util.Matrix;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shrinks an existing PDF by downsampling and re-encoding its images.
+ * The page content is scanned first to find each image XObject and the largest size it is drawn at.
+ * Images are then decoded and re-encoded on a worker pool where each worker opens its own instance of
+ * the source, and the results replace the image streams in place, so every reference stays valid.
+ * The document is written with compressed object streams.
+ */
+public class PDFCompressService {
+
+    private static final float POINTS_PER_INCH = 72f;
+
+    // Images below this many pixels are not worth the decode
+    private static final int MIN_PIXELS = 64 * 64;
+
+    // An image is only downsampled when it exceeds the target resolution by more than this factor
+    private static final double DOWNSAMPLE_SLACK = 1.1;
+
+    // Largest per-channel difference for a pixel to count as gray; absorbs JPEG noise
+    private static final int GRAY_TOLERANCE = 3;
+
+    private final ConversionOptions options;
+
+    public PDFCompressService() {
+        this(new ConversionOptions().setTargetDpi(150));
+    }
+
+    /**
+     * @param options Target DPI (0 keeps the pixel size), JPEG quality, parallelism and the memory
+     *                budget of the document being rewritten
+     */
+    public PDFCompressService(ConversionOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * Compresses the images of a PDF
+     * @param inputPath PDF to compress
+     * @param outputPath Output PDF file path, which may be the input
+     * @return the outcome for each image
+     * @throws IOException if the PDF cannot be read or written
+     */
+    public CompressionReport compressPDF(String inputPath, String outputPath) throws IOException {
+        return compressPDF(inputPath, outputPath, false, null, null);
+    }
+
+    /**
+     * Compresses the images of a PDF, reporting each finished image
+     * @param inputPath PDF to compress
+     * @param outputPath Output PDF file path, which may be the input
+     * @param grayscale Whether colour images are converted to grayscale; images that are already
+     *                  gray are always re-encoded with one component
+     * @param listener Receives a {@code pageAdded} call per image, counting images, or null
+     * @param cancellation Token that stops compression, or null
+     * @return the outcome for each image
+     * @throws CancellationToken.CancelledException if compression was cancelled
+     * @throws IOException if the PDF cannot be read or written
+     */
+    public CompressionReport compressPDF(String inputPath, String outputPath, boolean grayscale,
+                                         ConversionListener listener, CancellationToken cancellation)
+            throws IOException {
+        File inputFile = new File(inputPath);
+        File outputFile = new File(outputPath);
+        File partial = new File(outputFile.getAbsoluteFile().getParentFile(), "." + outputFile.getName() + ".part");
+        CancellationToken token = cancellation != null ? cancellation : new CancellationToken();
+        CompressionReport report = new CompressionReport();
+
+        try (PDDocument document = Loader.loadPDF(inputFile, null, null, null,
+                ImageToPDFService.createStreamCache(options))) {
+            if (listener != null) {
+                listener.stageStarted(ConversionMetrics.Stage.DECODE);
+            }
+            Map<COSObjectKey, double[]> drawnSizes = findDrawnImages(document, token);
+            List<COSObjectKey> images = new ArrayList<>(drawnSizes.keySet());
+
+            if (!images.isEmpty()) {
+                if (listener != null) {
+                    listener.stageStarted(ConversionMetrics.Stage.ENCODE);
+                }
+                recompressImages(document, inputFile, images, drawnSizes, grayscale, report, listener, token);
+            }
+
+            token.throwIfCancelled();
+            if (listener != null) {
+                listener.stageStarted(ConversionMetrics.Stage.SAVE);
+            }
+            try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(partial.toPath()))) {
+                document.save(output, CompressParameters.DEFAULT_COMPRESSION);
+            }
+            Files.move(partial.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(partial.toPath());
+        }
+
+        System.out.println("Compressed " + inputPath + ": " + report.getRecompressedCount() + " of "
+                + report.getEntries().size() + " image(s) re-encoded, " + report.getBytesSaved() + " bytes saved");
+        return report;
+    }
+
+    /**
+     * Re-encodes images on the worker pool and writes each result into the document from this thread
+     */
+    private void recompressImages(PDDocument document, File inputFile, List<COSObjectKey> images,
+                                  Map<COSObjectKey, double[]> drawnSizes, boolean grayscale,
+                                  CompressionReport report, ConversionListener listener,
+                                  CancellationToken token) throws IOException {
+        int workers = Math.min(options.getParallelism(), images.size());
+        AtomicInteger nextImage = new AtomicInteger();
+        BlockingQueue<Recompressed> finished = new LinkedBlockingQueue<>();
+        ExecutorService executor = createWorkerPool(workers);
+        Runnable stopWorkers = executor::shutdownNow;
+        token.onCancel(stopWorkers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                futures.add(executor.submit(() -> {
+                    recompressWorker(inputFile, images, drawnSizes, grayscale, nextImage, finished, token);
+                    return null;
+                }));
+            }
+
+            int done = 0;
+            while (done < images.size()) {
+                Recompressed result = finished.poll(100, TimeUnit.MILLISECONDS);
+                if (result != null) {
+                    done++;
+                    if (result.data != null) {
+                        replaceImage(document, result);
+                    }
+                    report.add(result.entry);
+                    if (listener != null) {
+                        listener.pageAdded(done, images.size(), result.entry.getImage());
+                    }
+                    continue;
+                }
+                token.throwIfCancelled();
+                for (Future<?> future : futures) {
+                    if (future.isDone()) {
+                        // Rethrows a worker failure; a worker that ran out of images returns normally
+                        future.get();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Compression interrupted");
+        } catch (ExecutionException e) {
+            token.throwIfCancelled();
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to compress " + inputFile, cause);
+        } finally {
+            token.removeOnCancel(stopWorkers);
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Re-encodes images from the shared counter with this worker's own document instance until none are left
+     */
+    private void recompressWorker(File inputFile, List<COSObjectKey> images, Map<COSObjectKey, double[]> drawnSizes,
+                                  boolean grayscale, AtomicInteger nextImage, BlockingQueue<Recompressed> finished,
+                                  CancellationToken cancellation) throws IOException {
+        try (PDDocument source = Loader.loadPDF(inputFile, null, null, null, IOUtils.createMemoryOnlyStreamCache())) {
+            int index;
+            while ((index = nextImage.getAndIncrement()) < images.size()) {
+                cancellation.throwIfCancelled();
+                COSObjectKey key = images.get(index);
+                COSBase base = source.getDocument().getObjectFromPool(key).getObject();
+                finished.add(base instanceof COSStream
+                        ? recompress((COSStream) base, key, drawnSizes.get(key), grayscale)
+                        : kept(key.toString(), 0, "not an image stream"));
+            }
+        }
+    }
+
+    private Recompressed recompress(COSStream stream, COSObjectKey key, double[] drawnSize, boolean grayscale)
+            throws IOException {
+        long originalBytes = stream.getLength();
+        PDImageXObject image = new PDImageXObject(new PDStream(stream), null);
+        int width = image.getWidth();
+        int height = image.getHeight();
+        String name = key.getNumber() + " " + key.getGeneration() + " R (" + width + "x" + height + ")";
+
+        String skipReason;
+        try {
+            skipReason = skipReason(image, stream);
+        } catch (IOException e) {
+            skipReason = "unreadable colour space";
+        }
+        if (skipReason != null) {
+            return kept(name, originalBytes, skipReason);
+        }
+
+        Dimension target = targetSize(width, height, drawnSize);
+        BufferedImage decoded;
+        try {
+            // Subsampled reads skip most of the decode work for heavily oversized images
+            int subsampling = target != null
+                    ? Math.max(1, Math.min(width / target.width, height / target.height)) : 1;
+            decoded = image.getOpaqueImage(null, subsampling);
+        } catch (IOException | RuntimeException e) {
+            return kept(name, originalBytes, "cannot decode: " + e.getMessage());
+        }
+        if (target != null && (decoded.getWidth() > target.width || decoded.getHeight() > target.height)) {
+            decoded = ImagePreparer.downscale(decoded, target.width, target.height);
+        }
+
+        boolean wasGray = image.getColorSpace().getNumberOfComponents() == 1;
+        boolean gray = grayscale || wasGray || isGray(decoded);
+        if (gray && decoded.getType() != BufferedImage.TYPE_BYTE_GRAY) {
+            decoded = toGray(decoded);
+        }
+        boolean wasJpeg = new PDStream(stream).getFilters().contains(COSName.DCT_DECODE);
+        if (wasJpeg && target == null && gray == wasGray) {
+            return kept(name, originalBytes, "already JPEG at target resolution");
+        }
+
+        byte[] jpeg = ImagePreparer.encodeJpeg(decoded, options.getJpegQuality());
+        if (jpeg.length >= originalBytes) {
+            return kept(name, originalBytes, "re-encoding would not be smaller");
+        }
+        CompressionReport.Entry entry = new CompressionReport.Entry(name, originalBytes, jpeg.length,
+                target != null, gray && !wasGray, null);
+        return new Recompressed(key, entry, jpeg, decoded.getWidth(), decoded.getHeight(), gray);
+    }
+
+    /**
+     * Images whose samples are not continuous tone, or whose dictionary refers to the original samples
+     */
+    private static String skipReason(PDImageXObject image, COSStream stream) throws IOException {
+        if (image.isStencil() || image.getBitsPerComponent() == 1) {
+            return "bilevel";
+        }
+        if ((long) image.getWidth() * image.getHeight() < MIN_PIXELS) {
+            return "too small";
+        }
+        if (image.getColorSpace() instanceof PDIndexed) {
+            return "palette image";
+        }
+        if (stream.getDictionaryObject(COSName.MASK) instanceof COSArray) {
+            return "colour key mask";
+        }
+        COSBase softMask = stream.getDictionaryObject(COSName.SMASK);
+        if (softMask instanceof COSStream && ((COSStream) softMask).containsKey(COSName.MATTE)) {
+            return "premultiplied soft mask";
+        }
+        List<COSName> filters = new PDStream(stream).getFilters();
+        if (filters.contains(COSName.JPX_DECODE) || filters.contains(COSName.JBIG2_DECODE)
+                || filters.contains(COSName.CCITTFAX_DECODE)) {
+            return "unsupported filter " + filters;
+        }
+        return null;
+    }
+
+    /**
+     * Pixel size that gives the target DPI at the largest size the image is drawn, or null if the
+     * image is already near or below it or is never drawn directly on a page
+     */
+    private Dimension targetSize(int width, int height, double[] drawnSize) {
+        if (options.getTargetDpi() <= 0 || drawnSize == null || drawnSize[0] <= 0 || drawnSize[1] <= 0) {
+            return null;
+        }
+        double maxWidth = Math.ceil(drawnSize[0] / POINTS_PER_INCH * options.getTargetDpi());
+        double maxHeight = Math.ceil(drawnSize[1] / POINTS_PER_INCH * options.getTargetDpi());
+        if (width <= maxWidth * DOWNSAMPLE_SLACK && height <= maxHeight * DOWNSAMPLE_SLACK) {
+            return null;
+        }
+        // Neither axis goes below the target, even when the image is drawn stretched
+        double scale = Math.max(maxWidth / width, maxHeight / height);
+        if (scale >= 1) {
+            return null;
+        }
+        return new Dimension(Math.max(1, (int) Math.round(width * scale)),
+                Math.max(1, (int) Math.round(height * scale)));
+    }
+
+    private static boolean isGray(BufferedImage image) {
+        int[] row = new int[image.getWidth()];
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getRGB(0, y, row.length, 1, row, 0, row.length);
+            for (int rgb : row) {
+                int r = (rgb >> 16) & 0xff;
+                int g = (rgb >> 8) & 0xff;
+                int b = rgb & 0xff;
+                if (Math.abs(r - g) > GRAY_TOLERANCE || Math.abs(g - b) > GRAY_TOLERANCE) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Converts with Rec. 601 luma on the encoded values; drawing into a gray image would go through
+     * a linear colour space and shift the tones
+     */
+    private static BufferedImage toGray(BufferedImage image) {
+        BufferedImage gray = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+        WritableRaster raster = gray.getRaster();
+        int[] row = new int[image.getWidth()];
+        int[] luma = new int[image.getWidth()];
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getRGB(0, y, row.length, 1, row, 0, row.length);
+            for (int x = 0; x < row.length; x++) {
+                int rgb = row[x];
+                luma[x] = (299 * ((rgb >> 16) & 0xff) + 587 * ((rgb >> 8) & 0xff) + 114 * (rgb & 0xff) + 500) / 1000;
+            }
+            raster.setSamples(0, y, row.length, 1, 0, luma);
+        }
+        return gray;
+    }
+
+    /**
+     * Swaps the encoded samples of an image stream, keeping its soft mask and every reference to it
+     */
+    private static void replaceImage(PDDocument document, Recompressed result) throws IOException {
+        COSStream stream = (COSStream) document.getDocument().getObjectFromPool(result.key).getObject();
+        try (OutputStream output = stream.createRawOutputStream()) {
+            output.write(result.data);
+        }
+        stream.setItem(COSName.FILTER, COSName.DCT_DECODE);
+        stream.removeItem(COSName.DECODE_PARMS);
+        stream.removeItem(COSName.DECODE);
+        stream.setInt(COSName.WIDTH, result.width);
+        stream.setInt(COSName.HEIGHT, result.height);
+        stream.setInt(COSName.BITS_PER_COMPONENT, 8);
+        stream.setItem(COSName.COLORSPACE, result.gray ? COSName.DEVICEGRAY : COSName.DEVICERGB);
+    }
+
+    private static Recompressed kept(String name, long originalBytes, String reason) {
+        return new Recompressed(null, new CompressionReport.Entry(name, originalBytes, originalBytes,
+                false, false, reason), null, 0, 0, false);
+    }
+
+    /**
+     * Finds the image XObjects drawn by page content, including inside forms, with the largest
+     * width and height in points each is drawn at
+     */
+    private static Map<COSObjectKey, double[]> findDrawnImages(PDDocument document, CancellationToken cancellation)
+            throws IOException {
+        DrawnImageCollector collector = new DrawnImageCollector();
+        for (PDPage page : document.getPages()) {
+            cancellation.throwIfCancelled();
+            try {
+                collector.processPage(page);
+            } catch (IOException e) {
+                // Images on a page with broken content are left alone
+                System.err.println("Skipping images of a page with unreadable content: " + e.getMessage());
+            }
+        }
+        return collector.drawnSizes;
+    }
+
+    private static final class DrawnImageCollector extends PDFStreamEngine {
+        private final Map<COSObjectKey, double[]> drawnSizes = new LinkedHashMap<>();
+
+        DrawnImageCollector() {
+            addOperator(new Concatenate(this));
+            addOperator(new DrawObject(this));
+            addOperator(new SetGraphicsStateParameters(this));
+            addOperator(new Save(this));
+            addOperator(new Restore(this));
+            addOperator(new SetMatrix(this));
+        }
+
+        @Override
+        protected void processOperator(Operator operator, List<COSBase> operands) throws IOException {
+            if ("Do".equals(operator.getName()) && !operands.isEmpty() && operands.get(0) instanceof COSName) {
+                PDXObject xobject = getResources().getXObject((COSName) operands.get(0));
+                if (xobject instanceof PDImageXObject) {
+                    COSObjectKey key = xobject.getCOSObject().getKey();
+                    if (key != null) {
+                        Matrix ctm = getGraphicsState().getCurrentTransformationMatrix();
+                        double[] size = drawnSizes.computeIfAbsent(key, k -> new double[2]);
+                        size[0] = Math.max(size[0], Math.abs(ctm.getScalingFactorX()));
+                        size[1] = Math.max(size[1], Math.abs(ctm.getScalingFactorY()));
+                    }
+                    return;
+                }
+            }
+            super.processOperator(operator, operands);
+        }
+    }
+
+    private static final class Recompressed {
+        final COSObjectKey key;
+        final CompressionReport.Entry entry;
+        // JPEG samples, or null if the image is kept
+        final byte[] data;
+        final int width;
+        final int height;
+        final boolean gray;
+
+        Recompressed(COSObjectKey key, CompressionReport.Entry entry, byte[] data, int width, int height,
+                     boolean gray) {
+            this.key = key;
+            this.entry = entry;
+            this.data = data;
+            this.width = width;
+            this.height = height;
+            this.gray = gray;
+        }
+    }
+
+    private static ExecutorService createWorkerPool(int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "pdf-compress-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
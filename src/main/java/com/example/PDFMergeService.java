@@ -0,0 +1,193 @@
+package com.example;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.multipdf.PDFMergerUtility;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Combines PDFs into one document without holding their contents on the heap.
+ * Sources are opened and validated on a worker pool a few documents ahead of the writer.
+ * The writer copies each source's pages into a document whose streams live in a scratch file
+ * beyond the memory budget, then closes the source straight away, so heap use depends on the
+ * number of pages rather than on the size of the inputs.
+ */
+public class PDFMergeService {
+
+    // Used when the options leave the memory budget unlimited; merged streams beyond it go to disk
+    private static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+    private final ConversionOptions options;
+
+    public PDFMergeService() {
+        this(new ConversionOptions());
+    }
+
+    /**
+     * @param options Memory budget and scratch directory for the merged document; the parallelism
+     *                is the number of sources opened ahead of the writer
+     */
+    public PDFMergeService(ConversionOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * Merges PDFs in the given order
+     * @param inputPaths PDFs to merge
+     * @param outputPath Output PDF file path
+     * @return number of pages in the merged document
+     * @throws IOException if a source cannot be read or the output cannot be written
+     */
+    public int mergePDFs(List<String> inputPaths, String outputPath) throws IOException {
+        return mergePDFs(inputPaths, outputPath, null, null);
+    }
+
+    /**
+     * Merges PDFs in the given order, reporting progress and allowing cancellation
+     * @param inputPaths PDFs to merge
+     * @param outputPath Output PDF file path
+     * @param listener Receives a {@code pageAdded} call after each source, counting sources, or null
+     * @param cancellation Token that stops the merge, or null
+     * @return number of pages in the merged document
+     * @throws CancellationToken.CancelledException if the merge was cancelled
+     * @throws IOException if a source cannot be read or the output cannot be written
+     */
+    public int mergePDFs(List<String> inputPaths, String outputPath, ConversionListener listener,
+                         CancellationToken cancellation) throws IOException {
+        if (inputPaths.isEmpty()) {
+            throw new IOException("No PDFs to merge");
+        }
+        CancellationToken token = cancellation != null ? cancellation : new CancellationToken();
+        ConversionOptions mergeOptions = options.getMemoryBudget() == ConversionOptions.UNLIMITED_MEMORY
+                ? new ConversionOptions()
+                        .setMemoryBudget(DEFAULT_MEMORY_BUDGET)
+                        .setScratchDirectory(options.getScratchDirectory())
+                : options;
+
+        int lookAhead = Math.min(options.getParallelism(), inputPaths.size());
+        ExecutorService executor = createWorkerPool(lookAhead);
+        Deque<Future<PDDocument>> pending = new ArrayDeque<>();
+        Runnable stopWorkers = executor::shutdownNow;
+        token.onCancel(stopWorkers);
+
+        File outputFile = new File(outputPath);
+        File partial = new File(outputFile.getAbsoluteFile().getParentFile(), "." + outputFile.getName() + ".part");
+        PDFMergerUtility merger = new PDFMergerUtility();
+        try (PDDocument destination = new PDDocument(ImageToPDFService.createStreamCache(mergeOptions))) {
+            if (listener != null) {
+                listener.stageStarted(ConversionMetrics.Stage.DECODE);
+            }
+
+            int next = 0;
+            for (; next < lookAhead; next++) {
+                pending.add(submitLoad(executor, inputPaths.get(next)));
+            }
+            for (int merged = 0; merged < inputPaths.size(); merged++) {
+                String inputPath = inputPaths.get(merged);
+                try (PDDocument source = awaitLoaded(pending.poll(), inputPath, token)) {
+                    // Keep the window full while this source is copied
+                    if (next < inputPaths.size()) {
+                        pending.add(submitLoad(executor, inputPaths.get(next++)));
+                    }
+                    token.throwIfCancelled();
+                    merger.appendDocument(destination, source);
+                }
+                if (listener != null) {
+                    listener.pageAdded(merged + 1, inputPaths.size(), inputPath);
+                }
+            }
+
+            token.throwIfCancelled();
+            if (listener != null) {
+                listener.stageStarted(ConversionMetrics.Stage.SAVE);
+            }
+            try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(partial.toPath()))) {
+                destination.save(output);
+            }
+            Files.move(partial.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+            int pages = destination.getNumberOfPages();
+            System.out.println("Merged " + inputPaths.size() + " PDF(s), " + pages + " page(s): " + outputPath);
+            return pages;
+        } finally {
+            token.removeOnCancel(stopWorkers);
+            executor.shutdownNow();
+            // Sources opened ahead of a failure are never handed to the writer
+            for (Future<PDDocument> future : pending) {
+                closeWhenLoaded(future);
+            }
+            Files.deleteIfExists(partial.toPath());
+        }
+    }
+
+    /**
+     * Opens a source and walks its page tree, so broken files are reported before the writer reaches them
+     */
+    private Future<PDDocument> submitLoad(ExecutorService executor, String inputPath) {
+        return executor.submit(() -> {
+            PDDocument document = Loader.loadPDF(new File(inputPath));
+            try {
+                if (document.getNumberOfPages() == 0) {
+                    throw new IOException("PDF has no pages: " + inputPath);
+                }
+                for (PDPage page : document.getPages()) {
+                    page.getMediaBox();
+                }
+                return document;
+            } catch (IOException | RuntimeException e) {
+                document.close();
+                throw e;
+            }
+        });
+    }
+
+    private PDDocument awaitLoaded(Future<PDDocument> future, String inputPath, CancellationToken cancellation)
+            throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Merge interrupted");
+        } catch (ExecutionException | CancellationException e) {
+            cancellation.throwIfCancelled();
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new IOException("Cannot read " + inputPath + ": " + cause.getMessage(), cause);
+        }
+    }
+
+    private static void closeWhenLoaded(Future<PDDocument> future) {
+        try {
+            if (!future.cancel(true)) {
+                future.get().close();
+            }
+        } catch (Exception e) {
+            // Failed or cancelled loads have nothing to close
+        }
+    }
+
+    private static ExecutorService createWorkerPool(int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "pdf-load-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
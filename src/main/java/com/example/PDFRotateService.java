@@ -0,0 +1,49 @@
+package com.example;
+
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDPage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Turns pages of an existing PDF. Only the changed page dictionaries are appended to the file as an
+ * incremental update, so rotating pages of a large archive writes a few hundred bytes per page.
+ */
+public class PDFRotateService {
+
+    /**
+     * Rotates pages in place
+     * @param pdfPath PDF to update
+     * @param pages Comma-separated one-based page ranges, e.g. {@code "1-3, 5, 8-"}, or blank for every page
+     * @param degrees Clockwise rotation added to the current one, a multiple of 90
+     * @return number of pages rotated
+     * @throws IllegalArgumentException if the angle is not a multiple of 90 or the ranges are malformed
+     * @throws IOException if the PDF cannot be read or updated
+     */
+    public int rotatePages(String pdfPath, String pages, int degrees) throws IOException {
+        if (degrees % 90 != 0) {
+            throw new IllegalArgumentException("Rotation must be a multiple of 90 degrees");
+        }
+
+        // Only page dictionaries change, so nothing large is ever held in memory
+        try (IncrementalUpdate update = new IncrementalUpdate(new File(pdfPath),
+                IOUtils.createMemoryOnlyStreamCache())) {
+            int pageCount = update.getDocument().getNumberOfPages();
+            String ranges = pages == null || pages.trim().isEmpty() ? "1-" : pages;
+            int rotated = 0;
+            for (int[] range : PDFSplitService.parseRanges(ranges, pageCount)) {
+                for (int index : range) {
+                    PDPage page = update.getDocument().getPage(index);
+                    page.setRotation(Math.floorMod(page.getRotation() + degrees, 360));
+                    rotated++;
+                }
+            }
+            long appended = update.commit(new CancellationToken());
+            System.out.println("Rotated " + rotated + " page(s) of " + pdfPath + " by " + degrees
+                    + " degrees, " + appended + " bytes appended");
+            return rotated;
+        }
+    }
+}
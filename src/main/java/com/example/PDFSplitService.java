@@ -0,0 +1,459 @@
+package com.example;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdfparser.PDFStreamParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.interactive.action.PDAction;
+import org.apache.pdfbox.pdmodel.interactive.action.PDActionGoTo;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationLink;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDDestination;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDPageDestination;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Splits a PDF into several documents by page ranges, by a fixed number of pages or by an approximate size.
+ * Parts are written on a worker pool where each worker opens its own instance of the source, since a
+ * PDDocument must not be shared between threads. Each page keeps only the resources its content stream
+ * names, so a part does not carry fonts and images of pages it does not contain.
+ */
+public class PDFSplitService {
+
+    // Resource categories whose entries are referenced by name from content streams
+    private static final Set<COSName> NAMED_RESOURCE_CATEGORIES = new HashSet<>(Arrays.asList(
+            COSName.FONT, COSName.XOBJECT, COSName.EXT_G_STATE, COSName.COLORSPACE,
+            COSName.PATTERN, COSName.SHADING, COSName.PROPERTIES));
+
+    private final int parallelism;
+
+    public PDFSplitService() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism Number of parts written at the same time
+     */
+    public PDFSplitService(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Writes one document per comma-separated range, e.g. {@code "1-3, 5, 8-"}; pages are numbered from 1
+     * and an open range runs to the last page
+     * @param pdfPath PDF to split
+     * @param outputDirectory Directory for the parts, created if missing
+     * @param ranges Page ranges, one per part
+     * @param listener Receives a {@code pageAdded} call per written part, in completion order, or null
+     * @param cancellation Token that stops splitting, or null
+     * @return the part files, in range order
+     * @throws IllegalArgumentException if the ranges are malformed or outside the document
+     * @throws CancellationToken.CancelledException if splitting was cancelled
+     * @throws IOException if the PDF cannot be read or a part cannot be written
+     */
+    public List<File> splitByRanges(String pdfPath, String outputDirectory, String ranges,
+                                    ConversionListener listener, CancellationToken cancellation) throws IOException {
+        int pageCount = countPages(new File(pdfPath));
+        return split(new File(pdfPath), outputDirectory, parseRanges(ranges, pageCount), listener, cancellation);
+    }
+
+    /**
+     * Writes one document per run of consecutive pages; the last part may be shorter
+     * @param pdfPath PDF to split
+     * @param outputDirectory Directory for the parts, created if missing
+     * @param pagesPerPart Pages in each part
+     * @param listener Receives a {@code pageAdded} call per written part, in completion order, or null
+     * @param cancellation Token that stops splitting, or null
+     * @return the part files, in page order
+     * @throws CancellationToken.CancelledException if splitting was cancelled
+     * @throws IOException if the PDF cannot be read or a part cannot be written
+     */
+    public List<File> splitEvery(String pdfPath, String outputDirectory, int pagesPerPart,
+                                 ConversionListener listener, CancellationToken cancellation) throws IOException {
+        if (pagesPerPart < 1) {
+            throw new IllegalArgumentException("pagesPerPart must be at least 1");
+        }
+        int pageCount = countPages(new File(pdfPath));
+        List<int[]> parts = new ArrayList<>();
+        for (int start = 0; start < pageCount; start += pagesPerPart) {
+            parts.add(pageRange(start, Math.min(start + pagesPerPart, pageCount)));
+        }
+        return split(new File(pdfPath), outputDirectory, parts, listener, cancellation);
+    }
+
+    /**
+     * Writes parts of consecutive pages that each stay under a size limit. The size of a part is estimated
+     * from the encoded length of the streams its pages use, counting shared resources once; a page that
+     * alone exceeds the limit becomes a part of its own.
+     * @param pdfPath PDF to split
+     * @param outputDirectory Directory for the parts, created if missing
+     * @param maxBytes Approximate upper bound on the size of each part
+     * @param listener Receives a {@code pageAdded} call per written part, in completion order, or null
+     * @param cancellation Token that stops splitting, or null
+     * @return the part files, in page order
+     * @throws CancellationToken.CancelledException if splitting was cancelled
+     * @throws IOException if the PDF cannot be read or a part cannot be written
+     */
+    public List<File> splitBySize(String pdfPath, String outputDirectory, long maxBytes,
+                                  ConversionListener listener, CancellationToken cancellation) throws IOException {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be at least 1");
+        }
+        File pdfFile = new File(pdfPath);
+        List<int[]> parts = new ArrayList<>();
+        try (PDDocument document = Loader.loadPDF(pdfFile, null, null, null, IOUtils.createMemoryOnlyStreamCache())) {
+            int pageCount = checkPageCount(document, pdfPath);
+            Set<COSStream> partStreams = Collections.newSetFromMap(new IdentityHashMap<>());
+            long partBytes = 0;
+            int partStart = 0;
+            for (int page = 0; page < pageCount; page++) {
+                Set<COSStream> pageStreams = streamsOf(document.getPage(page));
+                long added = 0;
+                for (COSStream stream : pageStreams) {
+                    if (!partStreams.contains(stream)) {
+                        added += stream.getLength();
+                    }
+                }
+                if (page > partStart && partBytes + added > maxBytes) {
+                    parts.add(pageRange(partStart, page));
+                    partStart = page;
+                    partStreams.clear();
+                    partBytes = 0;
+                    added = 0;
+                    for (COSStream stream : pageStreams) {
+                        added += stream.getLength();
+                    }
+                }
+                partStreams.addAll(pageStreams);
+                partBytes += added;
+            }
+            parts.add(pageRange(partStart, pageCount));
+        }
+        return split(pdfFile, outputDirectory, parts, listener, cancellation);
+    }
+
+    /**
+     * Writes each list of zero-based page indices to its own document
+     */
+    private List<File> split(File pdfFile, String outputDirectory, List<int[]> parts,
+                             ConversionListener listener, CancellationToken cancellation) throws IOException {
+        File outputDir = new File(outputDirectory);
+        Files.createDirectories(outputDir.toPath());
+        CancellationToken token = cancellation != null ? cancellation : new CancellationToken();
+
+        String baseName = pdfFile.getName().replaceFirst("(?i)\\.pdf$", "");
+        int digits = Math.max(3, String.valueOf(parts.size()).length());
+        List<File> outputs = new ArrayList<>(parts.size());
+        for (int part = 0; part < parts.size(); part++) {
+            outputs.add(new File(outputDir, String.format("%s-%0" + digits + "d.pdf", baseName, part + 1)));
+        }
+
+        if (listener != null) {
+            listener.stageStarted(ConversionMetrics.Stage.SAVE);
+        }
+
+        int workers = Math.min(parallelism, parts.size());
+        AtomicInteger nextPart = new AtomicInteger();
+        BlockingQueue<File> written = new LinkedBlockingQueue<>();
+        ExecutorService executor = createWorkerPool(workers);
+        Runnable stopWorkers = executor::shutdownNow;
+        token.onCancel(stopWorkers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                futures.add(executor.submit(() -> {
+                    writeParts(pdfFile, parts, outputs, nextPart, written, token);
+                    return null;
+                }));
+            }
+
+            // Progress is reported from this thread while the workers write
+            int done = 0;
+            while (done < parts.size()) {
+                File output = written.poll(100, TimeUnit.MILLISECONDS);
+                if (output != null) {
+                    done++;
+                    if (listener != null) {
+                        listener.pageAdded(done, parts.size(), output.getPath());
+                    }
+                    continue;
+                }
+                token.throwIfCancelled();
+                for (Future<?> future : futures) {
+                    if (future.isDone()) {
+                        // Rethrows a worker failure; a worker that ran out of parts returns normally
+                        future.get();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Splitting interrupted");
+        } catch (ExecutionException e) {
+            token.throwIfCancelled();
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to split " + pdfFile, cause);
+        } finally {
+            token.removeOnCancel(stopWorkers);
+            executor.shutdownNow();
+        }
+
+        System.out.println("Split " + pdfFile + " into " + parts.size() + " part(s) in " + outputDir);
+        return outputs;
+    }
+
+    /**
+     * Writes parts from the shared counter with this worker's own source instance until none are left
+     */
+    private void writeParts(File pdfFile, List<int[]> parts, List<File> outputs, AtomicInteger nextPart,
+                            BlockingQueue<File> written, CancellationToken cancellation) throws IOException {
+        // Pages are copied from the file on save; only parsed objects are kept in memory
+        try (PDDocument source = Loader.loadPDF(pdfFile, null, null, null, IOUtils.createMemoryOnlyStreamCache())) {
+            int part;
+            while ((part = nextPart.getAndIncrement()) < parts.size()) {
+                cancellation.throwIfCancelled();
+                File output = outputs.get(part);
+                File partial = new File(output.getParentFile(), "." + output.getName() + ".part");
+                try (PDDocument document = new PDDocument()) {
+                    for (int index : parts.get(part)) {
+                        document.addPage(copyPage(source.getPage(index)));
+                    }
+                    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(partial.toPath()))) {
+                        document.save(out);
+                    }
+                }
+                Files.move(partial.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                written.add(output);
+            }
+        }
+    }
+
+    /**
+     * A copy of the page dictionary that shares the source's content streams, so they are written out
+     * without being decoded. Inheritable attributes are resolved onto the copy.
+     */
+    private static PDPage copyPage(PDPage page) throws IOException {
+        PDPage copy = new PDPage(new COSDictionary(page.getCOSObject()));
+        copy.setMediaBox(page.getMediaBox());
+        copy.setCropBox(page.getCropBox());
+        copy.setRotation(page.getRotation());
+        copy.setResources(usedResources(page));
+        detachAnnotations(copy);
+        return copy;
+    }
+
+    /**
+     * The page's resources, inherited ones included, reduced to the entries its content stream names.
+     * Falls back to all resources when the content cannot be parsed.
+     */
+    private static PDResources usedResources(PDPage page) {
+        PDResources resources = page.getResources();
+        if (resources == null) {
+            return null;
+        }
+        Set<COSName> names = new HashSet<>();
+        try {
+            for (Object token : new PDFStreamParser(page).parse()) {
+                if (token instanceof COSName) {
+                    names.add((COSName) token);
+                } else if (token instanceof Operator && ((Operator) token).getImageParameters() != null) {
+                    // Inline images may name a colour space resource in their parameters
+                    for (COSBase value : ((Operator) token).getImageParameters().getValues()) {
+                        if (value instanceof COSName) {
+                            names.add((COSName) value);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            return resources;
+        }
+
+        COSDictionary all = resources.getCOSObject();
+        COSDictionary used = new COSDictionary();
+        for (COSName category : all.keySet()) {
+            COSBase entries = all.getDictionaryObject(category);
+            if (NAMED_RESOURCE_CATEGORIES.contains(category) && entries instanceof COSDictionary) {
+                COSDictionary kept = new COSDictionary();
+                for (COSName name : ((COSDictionary) entries).keySet()) {
+                    if (names.contains(name)) {
+                        kept.setItem(name, ((COSDictionary) entries).getItem(name));
+                    }
+                }
+                used.setItem(category, kept);
+            } else {
+                used.setItem(category, all.getItem(category));
+            }
+        }
+        return new PDResources(used);
+    }
+
+    /**
+     * Drops references from annotations back to source pages, which would otherwise pull the
+     * whole source page tree into the part
+     */
+    private static void detachAnnotations(PDPage page) throws IOException {
+        for (PDAnnotation annotation : page.getAnnotations()) {
+            if (annotation instanceof PDAnnotationLink) {
+                PDAnnotationLink link = (PDAnnotationLink) annotation;
+                PDDestination destination = link.getDestination();
+                PDAction action = link.getAction();
+                if (destination == null && action instanceof PDActionGoTo) {
+                    destination = ((PDActionGoTo) action).getDestination();
+                }
+                if (destination instanceof PDPageDestination) {
+                    ((PDPageDestination) destination).setPage(null);
+                }
+            }
+            annotation.setPage(null);
+        }
+    }
+
+    /**
+     * Streams a page would carry into a part: its content, used resources and annotation appearances
+     */
+    private static Set<COSStream> streamsOf(PDPage page) {
+        Set<COSStream> streams = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<COSBase> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        COSDictionary pageDictionary = page.getCOSObject();
+        collectStreams(pageDictionary.getDictionaryObject(COSName.CONTENTS), streams, visited);
+        collectStreams(pageDictionary.getDictionaryObject(COSName.ANNOTS), streams, visited);
+        PDResources resources = usedResources(page);
+        if (resources != null) {
+            collectStreams(resources.getCOSObject(), streams, visited);
+        }
+        return streams;
+    }
+
+    private static void collectStreams(COSBase base, Set<COSStream> streams, Set<COSBase> visited) {
+        if (base instanceof COSObject) {
+            base = ((COSObject) base).getObject();
+        }
+        if (base == null || !visited.add(base)) {
+            return;
+        }
+        if (base instanceof COSArray) {
+            for (COSBase item : (COSArray) base) {
+                collectStreams(item, streams, visited);
+            }
+        } else if (base instanceof COSDictionary) {
+            COSDictionary dictionary = (COSDictionary) base;
+            // Other pages are reached through link destinations and parents; they are not part of this page
+            COSName type = dictionary.getCOSName(COSName.TYPE);
+            if (COSName.PAGE.equals(type) || COSName.PAGES.equals(type)) {
+                return;
+            }
+            if (dictionary instanceof COSStream) {
+                streams.add((COSStream) dictionary);
+            }
+            for (COSName key : dictionary.keySet()) {
+                if (!COSName.PARENT.equals(key) && !COSName.P.equals(key)) {
+                    collectStreams(dictionary.getItem(key), streams, visited);
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses comma-separated one-based page ranges into zero-based page index lists
+     */
+    static List<int[]> parseRanges(String ranges, int pageCount) {
+        List<int[]> parts = new ArrayList<>();
+        for (String range : ranges.split(",")) {
+            String trimmed = range.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int dash = trimmed.indexOf('-');
+            int first;
+            int last;
+            try {
+                if (dash < 0) {
+                    first = last = Integer.parseInt(trimmed);
+                } else {
+                    first = Integer.parseInt(trimmed.substring(0, dash).trim());
+                    String end = trimmed.substring(dash + 1).trim();
+                    last = end.isEmpty() ? pageCount : Integer.parseInt(end);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid page range: " + trimmed);
+            }
+            if (first < 1 || last > pageCount || first > last) {
+                throw new IllegalArgumentException("Page range " + trimmed + " is outside pages 1-" + pageCount);
+            }
+            parts.add(pageRange(first - 1, last));
+        }
+        if (parts.isEmpty()) {
+            throw new IllegalArgumentException("No page ranges given");
+        }
+        return parts;
+    }
+
+    private static int[] pageRange(int start, int end) {
+        int[] pages = new int[end - start];
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = start + i;
+        }
+        return pages;
+    }
+
+    private static int countPages(File pdfFile) throws IOException {
+        try (PDDocument document = Loader.loadPDF(pdfFile)) {
+            return checkPageCount(document, pdfFile.getPath());
+        }
+    }
+
+    private static int checkPageCount(PDDocument document, String pdfPath) throws IOException {
+        int pageCount = document.getNumberOfPages();
+        if (pageCount == 0) {
+            throw new IOException("PDF has no pages: " + pdfPath);
+        }
+        return pageCount;
+    }
+
+    private static ExecutorService createWorkerPool(int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "pdf-split-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
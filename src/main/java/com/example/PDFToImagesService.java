@@ -0,0 +1,239 @@
+package com.example;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders the pages of a PDF to image files.
+ * Pages are rendered on a worker pool where each worker opens its own instance of the document,
+ * since a PDDocument must not be shared between threads. Workers take the next unrendered page,
+ * so each holds at most one page image and writes it out before taking another.
+ */
+public class PDFToImagesService {
+
+    /**
+     * Output image formats
+     */
+    public enum Format {
+        PNG("png", "png"),
+        JPEG("jpg", "jpeg"),
+        TIFF("tif", "tiff");
+
+        final String extension;
+        final String imageIoName;
+
+        Format(String extension, String imageIoName) {
+            this.extension = extension;
+            this.imageIoName = imageIoName;
+        }
+    }
+
+    private static final float JPEG_QUALITY = 0.9f;
+
+    private final int parallelism;
+
+    public PDFToImagesService() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism Number of pages rendered at the same time
+     */
+    public PDFToImagesService(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Renders every page of a PDF to an image file
+     * @param pdfPath PDF to render
+     * @param outputDirectory Directory for the images, created if missing
+     * @param dpi Rendering resolution
+     * @param format Image format
+     * @return the image files, in page order
+     * @throws IOException if the PDF cannot be read or an image cannot be written
+     */
+    public List<File> convertPDFToImages(String pdfPath, String outputDirectory, int dpi, Format format)
+            throws IOException {
+        return convertPDFToImages(pdfPath, outputDirectory, dpi, format, null, null);
+    }
+
+    /**
+     * Renders every page of a PDF to an image file, reporting each finished page
+     * @param pdfPath PDF to render
+     * @param outputDirectory Directory for the images, created if missing
+     * @param dpi Rendering resolution
+     * @param format Image format
+     * @param listener Receives a {@code pageAdded} call per written image, in completion order, or null
+     * @param cancellation Token that stops rendering, or null
+     * @return the image files, in page order
+     * @throws CancellationToken.CancelledException if rendering was cancelled
+     * @throws IOException if the PDF cannot be read or an image cannot be written
+     */
+    public List<File> convertPDFToImages(String pdfPath, String outputDirectory, int dpi, Format format,
+                                         ConversionListener listener, CancellationToken cancellation)
+            throws IOException {
+        if (dpi < 1) {
+            throw new IllegalArgumentException("dpi must be at least 1");
+        }
+        File pdfFile = new File(pdfPath);
+        File outputDir = new File(outputDirectory);
+        Files.createDirectories(outputDir.toPath());
+        CancellationToken token = cancellation != null ? cancellation : new CancellationToken();
+
+        int pageCount;
+        try (PDDocument document = Loader.loadPDF(pdfFile)) {
+            pageCount = document.getNumberOfPages();
+        }
+        if (pageCount == 0) {
+            throw new IOException("PDF has no pages: " + pdfPath);
+        }
+
+        String baseName = pdfFile.getName().replaceFirst("(?i)\\.pdf$", "");
+        int digits = Math.max(3, String.valueOf(pageCount).length());
+        List<File> outputs = new ArrayList<>(pageCount);
+        for (int page = 0; page < pageCount; page++) {
+            outputs.add(new File(outputDir,
+                    String.format("%s-%0" + digits + "d.%s", baseName, page + 1, format.extension)));
+        }
+
+        if (listener != null) {
+            listener.stageStarted(ConversionMetrics.Stage.DECODE);
+        }
+
+        int workers = Math.min(parallelism, pageCount);
+        AtomicInteger nextPage = new AtomicInteger();
+        BlockingQueue<File> written = new LinkedBlockingQueue<>();
+        ExecutorService executor = createWorkerPool(workers);
+        Runnable stopWorkers = executor::shutdownNow;
+        token.onCancel(stopWorkers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                futures.add(executor.submit(() -> {
+                    renderPages(pdfFile, dpi, format, outputs, nextPage, written, token);
+                    return null;
+                }));
+            }
+
+            // Progress is reported from this thread while the workers render
+            int done = 0;
+            while (done < pageCount) {
+                File image = written.poll(100, TimeUnit.MILLISECONDS);
+                if (image != null) {
+                    done++;
+                    if (listener != null) {
+                        listener.pageAdded(done, pageCount, image.getPath());
+                    }
+                    continue;
+                }
+                token.throwIfCancelled();
+                for (Future<?> future : futures) {
+                    if (future.isDone()) {
+                        // Rethrows a worker failure; a worker that ran out of pages returns normally
+                        future.get();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Rendering interrupted");
+        } catch (ExecutionException e) {
+            token.throwIfCancelled();
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to render " + pdfPath, cause);
+        } finally {
+            token.removeOnCancel(stopWorkers);
+            executor.shutdownNow();
+        }
+
+        System.out.println("Rendered " + pageCount + " page(s) of " + pdfPath + " to " + outputDir);
+        return outputs;
+    }
+
+    /**
+     * Renders pages from the shared counter with this worker's own document instance until none are left
+     */
+    private void renderPages(File pdfFile, int dpi, Format format, List<File> outputs, AtomicInteger nextPage,
+                             BlockingQueue<File> written, CancellationToken cancellation) throws IOException {
+        // Documents are read from the file on demand; only the renderer's scratch data is kept in memory
+        try (PDDocument document = Loader.loadPDF(pdfFile, null, null, null, IOUtils.createMemoryOnlyStreamCache())) {
+            PDFRenderer renderer = new PDFRenderer(document);
+            // Large embedded images are decoded at the output resolution rather than in full
+            renderer.setSubsamplingAllowed(true);
+
+            int page;
+            while ((page = nextPage.getAndIncrement()) < outputs.size()) {
+                cancellation.throwIfCancelled();
+                BufferedImage image = renderer.renderImageWithDPI(page, dpi, ImageType.RGB);
+                File output = outputs.get(page);
+                writeImage(image, format, output);
+                written.add(output);
+            }
+        }
+    }
+
+    /**
+     * Writes through a temporary file so a reader of the output directory never sees a partial image
+     */
+    private static void writeImage(BufferedImage image, Format format, File output) throws IOException {
+        File partial = new File(output.getParentFile(), "." + output.getName() + ".part");
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format.imageIoName);
+        if (!writers.hasNext()) {
+            throw new IOException("No image writer for " + format);
+        }
+        ImageWriter writer = writers.next();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(partial)) {
+            writer.setOutput(stream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (format == Format.JPEG) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(JPEG_QUALITY);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        Files.move(partial.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static ExecutorService createWorkerPool(int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "page-render-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,223 @@
+package com.example;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes one zlib stream whose compression is spread over several threads, the way pigz does it.
+ * Input is cut into chunks that are deflated independently. Each chunk is primed with the last 32 KB
+ * of the one before it, so the ratio stays close to that of a single stream, and ends with a sync
+ * flush, so the pieces join on byte boundaries. Input up to one chunk is compressed on the calling
+ * thread only. Only a few chunks are in flight per stream, so the memory a stream holds is bounded
+ * however many threads the pool has; see {@link #bufferedBytes}. Not thread-safe.
+ */
+final class ParallelDeflaterOutputStream extends OutputStream {
+
+    // Uncompressed bytes per chunk
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    // Deflate looks back at most this far, so this much of the previous chunk is all that helps
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    private static final int POOL_THREADS = Runtime.getRuntime().availableProcessors();
+
+    // Chunks handed to the pool and not yet written, per stream; several images encode at once
+    private static final int MAX_PENDING_CHUNKS = 4;
+
+    // Each pending chunk's input and compressed result, which can be slightly larger for
+    // incompressible data, plus the chunk being filled and the last one compressed by finish()
+    private static final long MAX_BUFFERED_BYTES = (2L * MAX_PENDING_CHUNKS + 3) * CHUNK_SIZE;
+
+    private static ExecutorService sharedPool;
+
+    private final OutputStream out;
+    private final int level;
+    private final ExecutorService pool;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+    private final Adler32 checksum = new Adler32();
+    private byte[] chunk = new byte[CHUNK_SIZE];
+    private int chunkLength;
+    private byte[] dictionary;
+    private boolean finished;
+
+    /**
+     * @param out Receives the zlib stream; not closed
+     * @param level Deflate level, 0 to 9, or {@link Deflater#DEFAULT_COMPRESSION}
+     */
+    ParallelDeflaterOutputStream(OutputStream out, int level) throws IOException {
+        this.out = out;
+        this.level = level;
+        this.pool = sharedPool();
+        writeHeader();
+    }
+
+    /**
+     * Upper bound on the heap one stream holds while compressing this much input
+     */
+    static long bufferedBytes(long inputBytes) {
+        // The chunk buffer is allocated up front, and data is held about twice, as input and output
+        return Math.min(MAX_BUFFERED_BYTES, CHUNK_SIZE + 2 * inputBytes + DICTIONARY_SIZE);
+    }
+
+    /**
+     * Compression threads shared by every stream, so concurrent images do not multiply them
+     */
+    private static synchronized ExecutorService sharedPool() {
+        if (sharedPool == null) {
+            AtomicInteger counter = new AtomicInteger();
+            sharedPool = Executors.newFixedThreadPool(POOL_THREADS, runnable -> {
+                Thread thread = new Thread(runnable, "image-deflate-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return sharedPool;
+    }
+
+    private void writeHeader() throws IOException {
+        // Deflate with a 32 KB window, and the level hint that zlib itself would write
+        int cmf = 0x78;
+        int levelFlag;
+        if (level == 0 || level == 1) {
+            levelFlag = 0;
+        } else if (level >= 2 && level <= 5) {
+            levelFlag = 1;
+        } else if (level == 6 || level == Deflater.DEFAULT_COMPRESSION) {
+            levelFlag = 2;
+        } else {
+            levelFlag = 3;
+        }
+        int flg = levelFlag << 6;
+        flg += 31 - ((cmf << 8) + flg) % 31;
+        out.write(cmf);
+        out.write(flg);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (finished) {
+            throw new IOException("Stream already finished");
+        }
+        checksum.update(bytes, offset, length);
+        while (length > 0) {
+            int count = Math.min(length, CHUNK_SIZE - chunkLength);
+            System.arraycopy(bytes, offset, chunk, chunkLength, count);
+            chunkLength += count;
+            offset += count;
+            length -= count;
+            if (chunkLength == CHUNK_SIZE) {
+                submitChunk();
+            }
+        }
+    }
+
+    private void submitChunk() throws IOException {
+        while (pending.size() >= MAX_PENDING_CHUNKS) {
+            writeOldest();
+        }
+        byte[] data = chunk;
+        byte[] previous = dictionary;
+        pending.add(pool.submit(() -> deflate(data, CHUNK_SIZE, previous, level, false)));
+        dictionary = Arrays.copyOfRange(data, CHUNK_SIZE - DICTIONARY_SIZE, CHUNK_SIZE);
+        chunk = new byte[CHUNK_SIZE];
+        chunkLength = 0;
+    }
+
+    private void writeOldest() throws IOException {
+        try {
+            out.write(pending.poll().get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Compression interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Compression failed", e.getCause());
+        }
+    }
+
+    /**
+     * Compresses the last chunk on the calling thread, writes the chunks still in progress in order,
+     * then the checksum of all input. The underlying stream is left open.
+     */
+    void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        byte[] last = deflate(chunk, chunkLength, dictionary, level, true);
+        chunk = null;
+        while (!pending.isEmpty()) {
+            writeOldest();
+        }
+        out.write(last);
+
+        long adler = checksum.getValue();
+        out.write((int) (adler >>> 24));
+        out.write((int) (adler >>> 16));
+        out.write((int) (adler >>> 8));
+        out.write((int) adler);
+        finished = true;
+    }
+
+    /**
+     * Drops chunks still being compressed, for a stream that will not be finished
+     */
+    void cancel() {
+        for (Future<byte[]> future : pending) {
+            future.cancel(true);
+        }
+        pending.clear();
+        chunk = null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+    }
+
+    /**
+     * Deflates one chunk as raw deflate data, without the zlib header or checksum
+     */
+    private static byte[] deflate(byte[] data, int length, byte[] dictionary, int level, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(data, 0, length);
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+            byte[] buffer = new byte[64 * 1024];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    compressed.write(buffer, 0, deflater.deflate(buffer));
+                }
+            } else {
+                // A sync flush ends on a byte boundary without marking the block as the last one
+                int count;
+                do {
+                    count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    compressed.write(buffer, 0, count);
+                } while (count == buffer.length);
+            }
+            return compressed.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+}
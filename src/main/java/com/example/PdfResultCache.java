@@ -0,0 +1,168 @@
+package com.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * On-disk cache of finished PDFs, keyed by the contents of the input images and the conversion options.
+ * Least recently used entries are evicted once the total size exceeds the limit.
+ */
+public class PdfResultCache {
+
+    private static final String SUFFIX = ".pdf";
+    private static final String PENDING_PREFIX = "pending_";
+
+    private final File directory;
+    private final long maxBytes;
+
+    // Cache key to file size, in access order
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    /**
+     * Opens the cache, picking up entries left in the directory by an earlier run
+     * @param directory Directory holding the cached PDFs
+     * @param maxBytes Upper bound on the total size of cached PDFs
+     */
+    public PdfResultCache(File directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory.toPath());
+
+        // Partial results from an interrupted run are never valid
+        File[] pending = directory.listFiles((dir, name) -> name.startsWith(PENDING_PREFIX));
+        if (pending != null) {
+            for (File file : pending) {
+                file.delete();
+            }
+        }
+
+        File[] existing = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (existing != null) {
+            Arrays.sort(existing, Comparator.comparingLong(File::lastModified));
+            for (File file : existing) {
+                String key = file.getName().substring(0, file.getName().length() - SUFFIX.length());
+                entries.put(key, file.length());
+                totalBytes += file.length();
+            }
+        }
+        evict();
+    }
+
+    /**
+     * Builds the cache key for an ordered list of inputs and the options that affect the output
+     */
+    public static String key(List<String> imagePaths, ConversionOptions options) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+
+        for (String imagePath : imagePaths) {
+            digest.update(ImagePreparer.contentHash(imagePath).getBytes(StandardCharsets.US_ASCII));
+            digest.update((byte) '\n');
+        }
+        digest.update(options.outputKey().getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Opens a cached PDF for reading and marks it as recently used
+     * @return an open channel positioned at the start of the PDF, or null on a miss
+     */
+    public FileChannel open(String key) throws IOException {
+        synchronized (this) {
+            if (entries.get(key) != null) {
+                // Opened under the lock so the entry cannot be evicted first;
+                // an open file stays readable even if it is evicted afterwards
+                return FileChannel.open(fileFor(key).toPath(), StandardOpenOption.READ);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Copies a cached PDF to the target. transferTo only skips the user-space copy when the target
+     * is itself a file or socket channel; a channel wrapping a servlet output stream, as the upload
+     * servlet uses, still copies through a buffer.
+     * @return number of bytes transferred
+     */
+    public static long transferTo(FileChannel source, WritableByteChannel target) throws IOException {
+        long size = source.size();
+        long position = 0;
+        while (position < size) {
+            position += source.transferTo(position, size - position, target);
+        }
+        return size;
+    }
+
+    /**
+     * Creates a file in the cache directory for a PDF that is about to be written
+     */
+    public File createTempFile() throws IOException {
+        return File.createTempFile(PENDING_PREFIX, ".tmp", directory);
+    }
+
+    /**
+     * Moves a finished PDF into the cache
+     * @param key Cache key from {@link #key}
+     * @param pdf Complete PDF created with {@link #createTempFile()}
+     */
+    public void store(String key, File pdf) throws IOException {
+        long size = pdf.length();
+        if (size > maxBytes) {
+            Files.deleteIfExists(pdf.toPath());
+            return;
+        }
+
+        synchronized (this) {
+            Files.move(pdf.toPath(), fileFor(key).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Long previous = entries.put(key, size);
+            if (previous != null) {
+                totalBytes -= previous;
+            }
+            totalBytes += size;
+            evict();
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            fileFor(entry.getKey()).delete();
+            totalBytes -= entry.getValue();
+            eldest.remove();
+        }
+    }
+
+    private File fileFor(String key) {
+        return new File(directory, key + SUFFIX);
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+}
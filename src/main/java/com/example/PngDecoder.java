@@ -0,0 +1,505 @@
+package com.example;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads a non-interlaced PNG one row at a time. Unlike the ImageIO reader, which decodes from the
+ * start of the image data on every region read, rows are inflated and unfiltered in a single pass
+ * holding only the current and previous row. The compressed image data can also be read as stored,
+ * for embedding without decoding.
+ */
+final class PngDecoder implements Closeable {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    static final int GRAY = 0;
+    static final int RGB = 2;
+    static final int PALETTE = 3;
+    static final int GRAY_ALPHA = 4;
+    static final int RGB_ALPHA = 6;
+
+    final int width;
+    final int height;
+    final int bitDepth;
+    final int colorType;
+    final boolean interlaced;
+
+    // PLTE entries as RGB triplets, and the tRNS chunk if present
+    private byte[] palette;
+    private byte[] transparency;
+
+    private final DataInputStream input;
+    private final Inflater inflater = new Inflater();
+    private ImageDataInputStream imageData;
+    private InputStream rowInput;
+    private final int bytesPerPixel;
+    private byte[] row;
+    private byte[] previousRow;
+    private int rowsRead;
+
+    private PngDecoder(DataInputStream input) throws IOException {
+        this.input = input;
+        byte[] signature = new byte[SIGNATURE.length];
+        input.readFully(signature);
+        if (!Arrays.equals(signature, SIGNATURE)) {
+            throw new IOException("Not a PNG file");
+        }
+
+        int headerLength = input.readInt();
+        if (!"IHDR".equals(readChunkType()) || headerLength != 13) {
+            throw new IOException("PNG does not start with an image header");
+        }
+        width = input.readInt();
+        height = input.readInt();
+        bitDepth = input.readUnsignedByte();
+        colorType = input.readUnsignedByte();
+        input.readUnsignedByte(); // compression method, always deflate
+        input.readUnsignedByte(); // filter method, always adaptive
+        interlaced = input.readUnsignedByte() != 0;
+        input.readInt(); // CRC
+        if (width <= 0 || height <= 0 || channels() == 0) {
+            throw new IOException("Unsupported PNG header");
+        }
+        bytesPerPixel = Math.max(1, channels() * bitDepth / 8);
+    }
+
+    /**
+     * Opens the file and reads the chunks up to the image data
+     */
+    static PngDecoder open(String imagePath) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(imagePath)));
+        try {
+            PngDecoder decoder = new PngDecoder(input);
+            decoder.readToImageData();
+            return decoder;
+        } catch (IOException | RuntimeException e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    private void readToImageData() throws IOException {
+        while (true) {
+            int length = input.readInt();
+            String type = readChunkType();
+            if ("IDAT".equals(type)) {
+                imageData = new ImageDataInputStream(length);
+                rowInput = new InflaterInputStream(imageData, inflater, 64 * 1024);
+                return;
+            }
+            if ("IEND".equals(type)) {
+                throw new IOException("PNG has no image data");
+            }
+            if ("PLTE".equals(type)) {
+                palette = new byte[length];
+                input.readFully(palette);
+            } else if ("tRNS".equals(type)) {
+                transparency = new byte[length];
+                input.readFully(transparency);
+            } else {
+                skipFully(length);
+            }
+            input.readInt(); // CRC
+        }
+    }
+
+    private String readChunkType() throws IOException {
+        byte[] type = new byte[4];
+        input.readFully(type);
+        return new String(type, StandardCharsets.US_ASCII);
+    }
+
+    private void skipFully(long length) throws IOException {
+        while (length > 0) {
+            long skipped = input.skip(length);
+            if (skipped <= 0) {
+                throw new EOFException("Truncated PNG chunk");
+            }
+            length -= skipped;
+        }
+    }
+
+    private int channels() {
+        switch (colorType) {
+            case GRAY:
+            case PALETTE:
+                return 1;
+            case GRAY_ALPHA:
+                return 2;
+            case RGB:
+                return 3;
+            case RGB_ALPHA:
+                return 4;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Whether the pixels are plain gray levels, with no alpha or transparent color
+     */
+    boolean isGray() {
+        return colorType == GRAY && transparency == null;
+    }
+
+    boolean hasAlpha() {
+        return colorType == GRAY_ALPHA || colorType == RGB_ALPHA || transparency != null;
+    }
+
+    /**
+     * Number of samples per pixel
+     */
+    int getColors() {
+        return channels();
+    }
+
+    /**
+     * PLTE entries as RGB triplets, or null if there is no palette
+     */
+    byte[] getPalette() {
+        return palette;
+    }
+
+    /**
+     * Returns why the image data cannot be embedded as a PDF FlateDecode stream with a PNG predictor,
+     * or null if it can. PDF takes every PNG bit depth, but has no interlacing and keeps alpha separately.
+     */
+    String passthroughUnsupportedReason() {
+        if (interlaced) {
+            return "interlaced PNG";
+        }
+        if (colorType == GRAY_ALPHA || colorType == RGB_ALPHA) {
+            return "PNG with alpha channel";
+        }
+        if (transparency != null) {
+            return "PNG with transparent color";
+        }
+        if (colorType == PALETTE && (palette == null || palette.length < 3)) {
+            return "PNG without palette";
+        }
+        return null;
+    }
+
+    /**
+     * Slices of a mapped PNG file holding the payload of each IDAT chunk, in order. Only chunk
+     * headers are read.
+     */
+    static List<ByteBuffer> imageDataChunks(ByteBuffer file) throws IOException {
+        List<ByteBuffer> chunks = new ArrayList<>();
+        int position = SIGNATURE.length;
+        while (file.limit() - position >= 12) {
+            int length = file.getInt(position);
+            boolean imageData = file.get(position + 4) == 'I' && file.get(position + 5) == 'D'
+                    && file.get(position + 6) == 'A' && file.get(position + 7) == 'T';
+            if (length < 0 || length > file.limit() - position - 12) {
+                throw new EOFException("Truncated PNG chunk");
+            }
+            if (imageData) {
+                ByteBuffer chunk = file.duplicate();
+                chunk.position(position + 8).limit(position + 8 + length);
+                chunks.add(chunk.slice());
+            } else if (!chunks.isEmpty()) {
+                // IDAT chunks are consecutive
+                return chunks;
+            }
+            position += 12 + length;
+        }
+        if (chunks.isEmpty()) {
+            throw new IOException("PNG has no image data");
+        }
+        return chunks;
+    }
+
+    /**
+     * Heap bytes {@link #imageData} needs for these chunks: none for a single chunk, which is used
+     * in place
+     */
+    static long imageDataCopyBytes(List<ByteBuffer> chunks) {
+        if (chunks.size() == 1) {
+            return 0;
+        }
+        long total = 0;
+        for (ByteBuffer chunk : chunks) {
+            total += chunk.remaining();
+        }
+        return total;
+    }
+
+    /**
+     * The zlib stream of the IDAT chunks as stored: a single chunk as it is, several joined into one
+     * buffer of exactly their size
+     */
+    static ByteBuffer imageData(List<ByteBuffer> chunks) throws IOException {
+        if (chunks.size() == 1) {
+            return chunks.get(0);
+        }
+        long total = imageDataCopyBytes(chunks);
+        if (total > Integer.MAX_VALUE) {
+            throw new IOException("PNG image data too large to embed as stored");
+        }
+        ByteBuffer joined = ByteBuffer.allocate((int) total);
+        for (ByteBuffer chunk : chunks) {
+            joined.put(chunk.duplicate());
+        }
+        joined.flip();
+        return joined;
+    }
+
+    /**
+     * Index of the next row {@link #nextRow} returns
+     */
+    int getRowIndex() {
+        return rowsRead;
+    }
+
+    /**
+     * Inflates and unfilters the next row. The returned array is reused by the following call.
+     */
+    byte[] nextRow() throws IOException {
+        if (rowsRead >= height) {
+            throw new IOException("Read past the last PNG row");
+        }
+        int rowBytes = (int) (((long) width * channels() * bitDepth + 7) / 8);
+        if (row == null) {
+            row = new byte[rowBytes];
+            previousRow = new byte[rowBytes];
+        } else {
+            byte[] swap = previousRow;
+            previousRow = row;
+            row = swap;
+        }
+
+        int filter = rowInput.read();
+        if (filter < 0) {
+            throw new EOFException("Truncated PNG image data");
+        }
+        int offset = 0;
+        while (offset < rowBytes) {
+            int read = rowInput.read(row, offset, rowBytes - offset);
+            if (read < 0) {
+                throw new EOFException("Truncated PNG image data");
+            }
+            offset += read;
+        }
+        unfilter(filter, rowsRead == 0);
+        rowsRead++;
+        return row;
+    }
+
+    private void unfilter(int filter, boolean firstRow) throws IOException {
+        int bpp = bytesPerPixel;
+        switch (filter) {
+            case 0:
+                break;
+            case 1:
+                for (int i = bpp; i < row.length; i++) {
+                    row[i] += row[i - bpp];
+                }
+                break;
+            case 2:
+                if (!firstRow) {
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] += previousRow[i];
+                    }
+                }
+                break;
+            case 3:
+                for (int i = 0; i < row.length; i++) {
+                    int left = i >= bpp ? row[i - bpp] & 0xFF : 0;
+                    int up = firstRow ? 0 : previousRow[i] & 0xFF;
+                    row[i] += (left + up) >>> 1;
+                }
+                break;
+            case 4:
+                for (int i = 0; i < row.length; i++) {
+                    int left = i >= bpp ? row[i - bpp] & 0xFF : 0;
+                    int up = firstRow ? 0 : previousRow[i] & 0xFF;
+                    int upLeft = i >= bpp && !firstRow ? previousRow[i - bpp] & 0xFF : 0;
+                    row[i] += paeth(left, up, upLeft);
+                }
+                break;
+            default:
+                throw new IOException("Unknown PNG row filter " + filter);
+        }
+    }
+
+    private static int paeth(int left, int up, int upLeft) {
+        int estimate = left + up - upLeft;
+        int distanceLeft = Math.abs(estimate - left);
+        int distanceUp = Math.abs(estimate - up);
+        int distanceUpLeft = Math.abs(estimate - upLeft);
+        if (distanceLeft <= distanceUp && distanceLeft <= distanceUpLeft) {
+            return left;
+        }
+        return distanceUp <= distanceUpLeft ? up : upLeft;
+    }
+
+    /**
+     * Converts every {@code step}-th pixel of an unfiltered row to 8-bit gray levels. Only for
+     * images where {@link #isGray} is true.
+     */
+    void toGray(byte[] row, byte[] gray, int step) {
+        for (int x = 0, i = 0; i < gray.length; x += step, i++) {
+            gray[i] = (byte) scaled(sample(row, x));
+        }
+    }
+
+    /**
+     * Converts every {@code step}-th pixel of an unfiltered row to ARGB
+     */
+    void toArgb(byte[] row, int[] argb, int step) {
+        int channels = channels();
+        for (int x = 0, i = 0; i < argb.length; x += step, i++) {
+            int base = x * channels;
+            int alpha = 0xFF;
+            int red;
+            int green;
+            int blue;
+            switch (colorType) {
+                case GRAY: {
+                    int level = sample(row, base);
+                    if (transparency != null && transparency.length >= 2 && level == readUnsigned16(transparency, 0)) {
+                        alpha = 0;
+                    }
+                    red = green = blue = scaled(level);
+                    break;
+                }
+                case GRAY_ALPHA:
+                    red = green = blue = scaled(sample(row, base));
+                    alpha = scaled(sample(row, base + 1));
+                    break;
+                case PALETTE: {
+                    int index = sample(row, base);
+                    int entry = index * 3;
+                    if (palette == null || entry + 2 >= palette.length) {
+                        red = green = blue = 0;
+                    } else {
+                        red = palette[entry] & 0xFF;
+                        green = palette[entry + 1] & 0xFF;
+                        blue = palette[entry + 2] & 0xFF;
+                    }
+                    if (transparency != null && index < transparency.length) {
+                        alpha = transparency[index] & 0xFF;
+                    }
+                    break;
+                }
+                default: {
+                    int r = sample(row, base);
+                    int g = sample(row, base + 1);
+                    int b = sample(row, base + 2);
+                    if (colorType == RGB_ALPHA) {
+                        alpha = scaled(sample(row, base + 3));
+                    } else if (transparency != null && transparency.length >= 6
+                            && r == readUnsigned16(transparency, 0) && g == readUnsigned16(transparency, 2)
+                            && b == readUnsigned16(transparency, 4)) {
+                        alpha = 0;
+                    }
+                    red = scaled(r);
+                    green = scaled(g);
+                    blue = scaled(b);
+                    break;
+                }
+            }
+            argb[i] = alpha << 24 | red << 16 | green << 8 | blue;
+        }
+    }
+
+    /**
+     * Reads the sample at the given index at the image bit depth, without scaling
+     */
+    private int sample(byte[] row, int index) {
+        switch (bitDepth) {
+            case 8:
+                return row[index] & 0xFF;
+            case 16:
+                return readUnsigned16(row, index * 2);
+            default: {
+                int bit = index * bitDepth;
+                int shift = 8 - bitDepth - (bit & 7);
+                return (row[bit >> 3] >> shift) & ((1 << bitDepth) - 1);
+            }
+        }
+    }
+
+    /**
+     * Scales a sample at the image bit depth to 0-255
+     */
+    private int scaled(int sample) {
+        switch (bitDepth) {
+            case 8:
+                return sample;
+            case 16:
+                return sample >> 8;
+            default:
+                return sample * 255 / ((1 << bitDepth) - 1);
+        }
+    }
+
+    private static int readUnsigned16(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 8 | (bytes[offset + 1] & 0xFF);
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        input.close();
+    }
+
+    /**
+     * The zlib stream split across consecutive IDAT chunks
+     */
+    private final class ImageDataInputStream extends InputStream {
+        private long remaining;
+        private boolean ended;
+
+        ImageDataInputStream(long firstChunkLength) {
+            this.remaining = firstChunkLength;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            while (remaining == 0) {
+                if (ended) {
+                    return -1;
+                }
+                input.readInt(); // CRC of the previous chunk
+                remaining = input.readInt();
+                if (!"IDAT".equals(readChunkType())) {
+                    ended = true;
+                    remaining = 0;
+                    return -1;
+                }
+            }
+            int read = input.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read < 0) {
+                throw new EOFException("Truncated PNG image data");
+            }
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public void close() {
+            // The file is closed by the decoder
+        }
+    }
+}
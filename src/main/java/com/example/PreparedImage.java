@@ -0,0 +1,134 @@
+package com.example;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColorSpace;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Future;
+
+/**
+ * Encoded image data that is not yet attached to a PDF document.
+ * Created on worker threads and turned into an XObject on the assembly thread.
+ */
+final class PreparedImage {
+
+    final String sourcePath;
+    final ByteBuffer encodedData;
+    final COSName filter;
+    final int width;
+    final int height;
+    final int bitsPerComponent;
+    final PDColorSpace colorSpace;
+    final PreparedImage softMask;
+
+    // Optional /Decode array, e.g. for inverted Adobe CMYK JPEGs
+    COSArray decode;
+
+    // Optional /DecodeParms, e.g. the predictor of PNG data embedded as stored
+    COSDictionary decodeParms;
+
+    // How the image was embedded, reported back to callers
+    ConversionReport.EmbedMethod embedMethod = ConversionReport.EmbedMethod.DECODED;
+    String fallbackReason;
+    boolean downsampled;
+
+    // SHA-256 of the source file, set when duplicate detection is enabled
+    String contentHash;
+
+    // For a duplicate, the preparation of the copy that claimed the content hash first
+    Future<PreparedImage> original;
+
+    PreparedImage(String sourcePath, ByteBuffer encodedData, COSName filter, int width, int height,
+                  int bitsPerComponent, PDColorSpace colorSpace, PreparedImage softMask) {
+        this.sourcePath = sourcePath;
+        this.encodedData = encodedData;
+        this.filter = filter;
+        this.width = width;
+        this.height = height;
+        this.bitsPerComponent = bitsPerComponent;
+        this.colorSpace = colorSpace;
+        this.softMask = softMask;
+    }
+
+    /**
+     * Placeholder for an image whose content is identical to another one in the batch.
+     * Carries no data; the page reuses the other image's XObject. Workers finish in any order, so
+     * the other image may belong to a later page, in which case its data is embedded for this one.
+     */
+    static PreparedImage duplicateOf(String sourcePath, String contentHash, Future<PreparedImage> original) {
+        PreparedImage image = new PreparedImage(sourcePath, null, null, 0, 0, 0, null, null);
+        image.contentHash = contentHash;
+        image.original = original;
+        image.embedMethod = ConversionReport.EmbedMethod.REUSED;
+        return image;
+    }
+
+    boolean isDuplicate() {
+        return embedMethod == ConversionReport.EmbedMethod.REUSED;
+    }
+
+    /**
+     * Creates the image XObject in the given document.
+     * Only copies the already encoded bytes, so it is cheap enough for the assembly thread.
+     */
+    PDImageXObject toXObject(PDDocument document) throws IOException {
+        PDImageXObject image = new PDImageXObject(document,
+                new ByteBufferInputStream(encodedData.duplicate()),
+                filter,
+                width,
+                height,
+                bitsPerComponent,
+                colorSpace);
+
+        if (decode != null) {
+            image.setDecode(decode);
+        }
+        if (decodeParms != null) {
+            image.getCOSObject().setItem(COSName.DECODE_PARMS, decodeParms);
+        }
+        if (softMask != null) {
+            image.getCOSObject().setItem(COSName.SMASK, softMask.toXObject(document));
+        }
+        return image;
+    }
+
+    /**
+     * Reads a heap or memory-mapped buffer without copying it into an intermediate array
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.example;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import java.awt.*;
+import java.io.File;
+
+/**
+ * Dialog for rotating pages of a PDF in place
+ */
+class RotatePDFDialog extends JDialog {
+
+    private static final String[] ANGLES = {"90° clockwise", "180°", "90° counter-clockwise"};
+    private static final int[] DEGREES = {90, 180, 270};
+
+    private final PDFRotateService rotateService;
+    private JTextField pdfField;
+    private JTextField pagesField;
+    private JComboBox<String> angleCombo;
+    private JLabel statusLabel;
+    private JButton rotateButton;
+
+    private static final Color PRIMARY_COLOR = new Color(142, 68, 173);
+    private static final Color BACKGROUND_COLOR = new Color(248, 249, 250);
+    private static final Color CARD_COLOR = Color.WHITE;
+    private static final Color TEXT_COLOR = new Color(52, 73, 94);
+    private static final Color LIGHT_TEXT_COLOR = new Color(127, 140, 141);
+
+    public RotatePDFDialog(Frame parent, PDFRotateService rotateService) {
+        super(parent, "Rotate PDF", true);
+        this.rotateService = rotateService;
+
+        initializeComponents();
+        setupLayout();
+
+        setSize(700, 380);
+        setLocationRelativeTo(parent);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+    }
+
+    private void initializeComponents() {
+        pdfField = new JTextField();
+        pagesField = new JTextField();
+        pagesField.setToolTipText("e.g. 1-3, 5, 8- ; leave empty for all pages");
+        angleCombo = new JComboBox<>(ANGLES);
+
+        statusLabel = new JLabel("Choose a PDF to rotate");
+        statusLabel.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        statusLabel.setForeground(TEXT_COLOR);
+
+        rotateButton = new JButton("Rotate Pages");
+        rotateButton.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        rotateButton.setBackground(PRIMARY_COLOR);
+        rotateButton.setForeground(Color.WHITE);
+        rotateButton.setBorder(new EmptyBorder(12, 30, 12, 30));
+        rotateButton.setFocusPainted(false);
+        rotateButton.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        rotateButton.addActionListener(e -> rotate());
+    }
+
+    private void setupLayout() {
+        setLayout(new BorderLayout());
+        getContentPane().setBackground(BACKGROUND_COLOR);
+
+        // Header
+        JPanel headerPanel = new JPanel(new BorderLayout());
+        headerPanel.setBackground(CARD_COLOR);
+        headerPanel.setBorder(new EmptyBorder(25, 30, 25, 30));
+
+        JLabel titleLabel = new JLabel("Rotate PDF");
+        titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 20));
+        titleLabel.setForeground(TEXT_COLOR);
+
+        JLabel subtitleLabel = new JLabel("Turn pages in place; only the changed pages are written");
+        subtitleLabel.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        subtitleLabel.setForeground(LIGHT_TEXT_COLOR);
+
+        headerPanel.add(titleLabel, BorderLayout.NORTH);
+        headerPanel.add(subtitleLabel, BorderLayout.SOUTH);
+
+        // Form
+        JPanel formPanel = new JPanel(new GridBagLayout());
+        formPanel.setOpaque(false);
+        formPanel.setBorder(new EmptyBorder(20, 30, 20, 30));
+        GridBagConstraints c = new GridBagConstraints();
+        c.insets = new Insets(6, 0, 6, 10);
+        c.fill = GridBagConstraints.HORIZONTAL;
+
+        JButton pdfButton = new JButton("Browse...");
+        pdfButton.addActionListener(e -> choosePdf());
+
+        addRow(formPanel, c, 0, "PDF file:", pdfField, pdfButton);
+        addRow(formPanel, c, 1, "Pages (empty for all):", pagesField, null);
+        addRow(formPanel, c, 2, "Rotation:", angleCombo, null);
+
+        // Footer
+        JPanel footerPanel = new JPanel(new BorderLayout());
+        footerPanel.setBackground(CARD_COLOR);
+        footerPanel.setBorder(new EmptyBorder(20, 30, 20, 30));
+
+        JPanel statusPanel = new JPanel(new BorderLayout(15, 0));
+        statusPanel.setOpaque(false);
+        statusPanel.setBorder(new EmptyBorder(0, 0, 15, 0));
+        statusPanel.add(statusLabel, BorderLayout.WEST);
+
+        footerPanel.add(statusPanel, BorderLayout.NORTH);
+        footerPanel.add(rotateButton, BorderLayout.SOUTH);
+
+        add(headerPanel, BorderLayout.NORTH);
+        add(formPanel, BorderLayout.CENTER);
+        add(footerPanel, BorderLayout.SOUTH);
+    }
+
+    private void addRow(JPanel panel, GridBagConstraints c, int row, String label, JComponent field, JButton button) {
+        JLabel rowLabel = new JLabel(label);
+        rowLabel.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        rowLabel.setForeground(TEXT_COLOR);
+
+        c.gridy = row;
+        c.gridx = 0;
+        c.weightx = 0;
+        panel.add(rowLabel, c);
+        c.gridx = 1;
+        c.weightx = 1;
+        panel.add(field, c);
+        if (button != null) {
+            c.gridx = 2;
+            c.weightx = 0;
+            panel.add(button, c);
+        }
+    }
+
+    private void choosePdf() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setFileFilter(new FileNameExtensionFilter("PDF files", "pdf"));
+        if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            pdfField.setText(fileChooser.getSelectedFile().getAbsolutePath());
+        }
+    }
+
+    private void rotate() {
+        String pdfPath = pdfField.getText().trim();
+        if (pdfPath.isEmpty() || !new File(pdfPath).isFile()) {
+            JOptionPane.showMessageDialog(this,
+                    "Please choose an existing PDF.",
+                    "Missing Input",
+                    JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        String pages = pagesField.getText().trim();
+        int degrees = DEGREES[angleCombo.getSelectedIndex()];
+        rotateButton.setEnabled(false);
+        updateStatus("Rotating pages...");
+
+        SwingWorker<Integer, Void> worker = new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() throws Exception {
+                return rotateService.rotatePages(pdfPath, pages, degrees);
+            }
+
+            @Override
+            protected void done() {
+                rotateButton.setEnabled(true);
+                try {
+                    int rotated = get();
+                    updateStatus(rotated + " page(s) rotated");
+                    JOptionPane.showMessageDialog(RotatePDFDialog.this,
+                            rotated + " page(s) rotated in\n" + pdfPath,
+                            "Success",
+                            JOptionPane.INFORMATION_MESSAGE);
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    updateStatus("Error: " + cause.getMessage());
+                    JOptionPane.showMessageDialog(RotatePDFDialog.this,
+                            "Error rotating PDF: " + cause.getMessage(),
+                            "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+
+        worker.execute();
+    }
+
+    private void updateStatus(String message) {
+        statusLabel.setText(message);
+    }
+}
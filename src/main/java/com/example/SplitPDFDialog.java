@@ -0,0 +1,299 @@
+package com.example;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import java.awt.*;
+import java.io.File;
+import java.util.List;
+
+/**
+ * Dialog for splitting a PDF into several documents
+ */
+class SplitPDFDialog extends JDialog {
+
+    private static final String BY_RANGES = "Page ranges";
+    private static final String EVERY_N_PAGES = "Every N pages";
+    private static final String BY_SIZE = "Maximum size (MB)";
+
+    private final PDFSplitService splitService;
+    private JTextField pdfField;
+    private JTextField outputField;
+    private JComboBox<String> modeCombo;
+    private JTextField valueField;
+    private JLabel hintLabel;
+    private JLabel statusLabel;
+    private JProgressBar progressBar;
+    private JButton convertButton;
+    // Token of the split in progress, null when idle; the split button cancels it
+    private CancellationToken activeConversion;
+
+    private static final Color PRIMARY_COLOR = new Color(231, 76, 60);
+    private static final Color BACKGROUND_COLOR = new Color(248, 249, 250);
+    private static final Color CARD_COLOR = Color.WHITE;
+    private static final Color TEXT_COLOR = new Color(52, 73, 94);
+    private static final Color LIGHT_TEXT_COLOR = new Color(127, 140, 141);
+
+    public SplitPDFDialog(Frame parent, PDFSplitService splitService) {
+        super(parent, "Split PDF", true);
+        this.splitService = splitService;
+
+        initializeComponents();
+        setupLayout();
+
+        setSize(700, 460);
+        setLocationRelativeTo(parent);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+    }
+
+    private void initializeComponents() {
+        pdfField = new JTextField();
+        outputField = new JTextField();
+
+        modeCombo = new JComboBox<>(new String[]{BY_RANGES, EVERY_N_PAGES, BY_SIZE});
+        modeCombo.addActionListener(e -> updateHint());
+        valueField = new JTextField();
+        hintLabel = new JLabel();
+        hintLabel.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        hintLabel.setForeground(LIGHT_TEXT_COLOR);
+        updateHint();
+
+        statusLabel = new JLabel("Choose a PDF to split");
+        statusLabel.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        statusLabel.setForeground(TEXT_COLOR);
+
+        progressBar = new JProgressBar();
+        progressBar.setVisible(false);
+        progressBar.setStringPainted(true);
+
+        convertButton = new JButton("Split PDF");
+        convertButton.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        convertButton.setBackground(PRIMARY_COLOR);
+        convertButton.setForeground(Color.WHITE);
+        convertButton.setBorder(new EmptyBorder(12, 30, 12, 30));
+        convertButton.setFocusPainted(false);
+        convertButton.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        convertButton.addActionListener(e -> convert());
+    }
+
+    private void setupLayout() {
+        setLayout(new BorderLayout());
+        getContentPane().setBackground(BACKGROUND_COLOR);
+
+        // Header
+        JPanel headerPanel = new JPanel(new BorderLayout());
+        headerPanel.setBackground(CARD_COLOR);
+        headerPanel.setBorder(new EmptyBorder(25, 30, 25, 30));
+
+        JLabel titleLabel = new JLabel("Split PDF");
+        titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 20));
+        titleLabel.setForeground(TEXT_COLOR);
+
+        JLabel subtitleLabel = new JLabel("Write groups of pages to separate PDF files");
+        subtitleLabel.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        subtitleLabel.setForeground(LIGHT_TEXT_COLOR);
+
+        headerPanel.add(titleLabel, BorderLayout.NORTH);
+        headerPanel.add(subtitleLabel, BorderLayout.SOUTH);
+
+        // Form
+        JPanel formPanel = new JPanel(new GridBagLayout());
+        formPanel.setOpaque(false);
+        formPanel.setBorder(new EmptyBorder(20, 30, 20, 30));
+        GridBagConstraints c = new GridBagConstraints();
+        c.insets = new Insets(6, 0, 6, 10);
+        c.fill = GridBagConstraints.HORIZONTAL;
+
+        JButton pdfButton = new JButton("Browse...");
+        pdfButton.addActionListener(e -> choosePdf());
+        JButton outputButton = new JButton("Browse...");
+        outputButton.addActionListener(e -> chooseOutputDirectory());
+
+        addRow(formPanel, c, 0, "PDF file:", pdfField, pdfButton);
+        addRow(formPanel, c, 1, "Output folder:", outputField, outputButton);
+        addRow(formPanel, c, 2, "Split by:", modeCombo, null);
+        addRow(formPanel, c, 3, "Value:", valueField, null);
+        c.gridy = 4;
+        c.gridx = 1;
+        formPanel.add(hintLabel, c);
+
+        // Footer
+        JPanel footerPanel = new JPanel(new BorderLayout());
+        footerPanel.setBackground(CARD_COLOR);
+        footerPanel.setBorder(new EmptyBorder(20, 30, 20, 30));
+
+        JPanel statusPanel = new JPanel(new BorderLayout(15, 0));
+        statusPanel.setOpaque(false);
+        statusPanel.setBorder(new EmptyBorder(0, 0, 15, 0));
+        statusPanel.add(statusLabel, BorderLayout.WEST);
+        statusPanel.add(progressBar, BorderLayout.CENTER);
+
+        footerPanel.add(statusPanel, BorderLayout.NORTH);
+        footerPanel.add(convertButton, BorderLayout.SOUTH);
+
+        add(headerPanel, BorderLayout.NORTH);
+        add(formPanel, BorderLayout.CENTER);
+        add(footerPanel, BorderLayout.SOUTH);
+    }
+
+    private void addRow(JPanel panel, GridBagConstraints c, int row, String label, JComponent field, JButton button) {
+        JLabel rowLabel = new JLabel(label);
+        rowLabel.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        rowLabel.setForeground(TEXT_COLOR);
+
+        c.gridy = row;
+        c.gridx = 0;
+        c.weightx = 0;
+        panel.add(rowLabel, c);
+        c.gridx = 1;
+        c.weightx = 1;
+        panel.add(field, c);
+        if (button != null) {
+            c.gridx = 2;
+            c.weightx = 0;
+            panel.add(button, c);
+        }
+    }
+
+    private void choosePdf() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setFileFilter(new FileNameExtensionFilter("PDF files", "pdf"));
+        if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            File pdf = fileChooser.getSelectedFile();
+            pdfField.setText(pdf.getAbsolutePath());
+            if (outputField.getText().trim().isEmpty()) {
+                String name = pdf.getName().replaceFirst("(?i)\\.pdf$", "");
+                outputField.setText(new File(pdf.getParentFile(), name + "_parts").getAbsolutePath());
+            }
+        }
+    }
+
+    private void chooseOutputDirectory() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+            outputField.setText(fileChooser.getSelectedFile().getAbsolutePath());
+        }
+    }
+
+    private void updateHint() {
+        Object mode = modeCombo.getSelectedItem();
+        if (BY_RANGES.equals(mode)) {
+            hintLabel.setText("One file per range, e.g. 1-3, 5, 8-");
+        } else if (EVERY_N_PAGES.equals(mode)) {
+            hintLabel.setText("Number of pages in each file");
+        } else {
+            hintLabel.setText("Approximate size limit of each file in megabytes");
+        }
+    }
+
+    private void convert() {
+        if (activeConversion != null) {
+            activeConversion.cancel();
+            convertButton.setEnabled(false);
+            updateStatus("Cancelling...");
+            return;
+        }
+
+        String pdfPath = pdfField.getText().trim();
+        String outputPath = outputField.getText().trim();
+        String value = valueField.getText().trim();
+        if (pdfPath.isEmpty() || !new File(pdfPath).isFile() || outputPath.isEmpty() || value.isEmpty()) {
+            JOptionPane.showMessageDialog(this,
+                    "Please choose an existing PDF, an output folder and how to split it.",
+                    "Missing Input",
+                    JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        Object mode = modeCombo.getSelectedItem();
+        int pagesPerPart = 0;
+        long maxBytes = 0;
+        try {
+            if (EVERY_N_PAGES.equals(mode)) {
+                pagesPerPart = Integer.parseInt(value);
+            } else if (BY_SIZE.equals(mode)) {
+                maxBytes = (long) (Double.parseDouble(value) * 1024 * 1024);
+            }
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this,
+                    "Please enter a number.",
+                    "Invalid Input",
+                    JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        int finalPagesPerPart = pagesPerPart;
+        long finalMaxBytes = maxBytes;
+
+        CancellationToken cancellation = new CancellationToken();
+        activeConversion = cancellation;
+        convertButton.setText("Cancel");
+        progressBar.setValue(0);
+        progressBar.setVisible(true);
+        updateStatus("Splitting PDF...");
+
+        SwingWorker<List<File>, Integer> worker = new SwingWorker<List<File>, Integer>() {
+            @Override
+            protected List<File> doInBackground() throws Exception {
+                ConversionListener listener = new ConversionListener() {
+                    @Override
+                    public void pageAdded(int pages, int totalImages, String imagePath) {
+                        publish(pages * 100 / totalImages);
+                    }
+                };
+                if (EVERY_N_PAGES.equals(mode)) {
+                    return splitService.splitEvery(pdfPath, outputPath, finalPagesPerPart, listener, cancellation);
+                } else if (BY_SIZE.equals(mode)) {
+                    return splitService.splitBySize(pdfPath, outputPath, finalMaxBytes, listener, cancellation);
+                }
+                return splitService.splitByRanges(pdfPath, outputPath, value, listener, cancellation);
+            }
+
+            @Override
+            protected void process(List<Integer> chunks) {
+                progressBar.setValue(chunks.get(chunks.size() - 1));
+            }
+
+            @Override
+            protected void done() {
+                activeConversion = null;
+                convertButton.setText("Split PDF");
+                convertButton.setEnabled(true);
+                progressBar.setVisible(false);
+                if (cancellation.isCancelled()) {
+                    updateStatus("Splitting cancelled");
+                    return;
+                }
+                try {
+                    List<File> parts = get();
+                    updateStatus(parts.size() + " file(s) created");
+                    JOptionPane.showMessageDialog(SplitPDFDialog.this,
+                            parts.size() + " file(s) created in\n" + outputPath,
+                            "Success",
+                            JOptionPane.INFORMATION_MESSAGE);
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    updateStatus("Error: " + cause.getMessage());
+                    JOptionPane.showMessageDialog(SplitPDFDialog.this,
+                            "Error splitting PDF: " + cause.getMessage(),
+                            "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+
+        worker.execute();
+    }
+
+    private void updateStatus(String message) {
+        statusLabel.setText(message);
+    }
+
+    @Override
+    public void dispose() {
+        if (activeConversion != null) {
+            activeConversion.cancel();
+        }
+        super.dispose();
+    }
+}
@@ -0,0 +1,333 @@
+package com.example;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Small previews of image files, generated on background threads and kept in a memory-bounded LRU cache,
+ * optionally backed by a directory of PNGs keyed by path and modification time. The directory is
+ * bounded too: thumbnails unused for {@link #DISK_MAX_AGE_DAYS} days are deleted, then the least
+ * recently used ones until it fits its byte limit.
+ * {@link #get} never touches the disk, so it is safe to call from a cell renderer on the EDT.
+ */
+class ThumbnailCache {
+
+    static final int DISK_MAX_AGE_DAYS = 30;
+
+    // Leftovers of interrupted writes older than this are deleted
+    private static final long PARTIAL_MAX_AGE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final int size;
+    private final long maxBytes;
+    private final File diskDirectory;
+    private final long maxDiskBytes;
+    private final Consumer<String> onLoaded;
+    private final ThreadPoolExecutor executor;
+
+    // Path to thumbnail, in access order
+    private final LinkedHashMap<String, BufferedImage> thumbnails = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+
+    // Bytes of thumbnails in the disk directory, as of the last prune plus those written since
+    private final AtomicLong diskBytes = new AtomicLong();
+    private final Object diskLock = new Object();
+
+    // Paths queued or being generated, and paths that could not be read
+    private final ConcurrentMap<String, LoadTask> loading = new ConcurrentHashMap<>();
+    private final Set<String> failed = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * @param size Longest side of a thumbnail in pixels
+     * @param maxBytes Upper bound on the memory held by cached thumbnails
+     * @param diskDirectory Directory for persisted thumbnails, or null to keep them in memory only
+     * @param maxDiskBytes Upper bound on the size of the disk directory
+     * @param onLoaded Called on the generating thread with the path of each thumbnail that became available
+     */
+    ThumbnailCache(int size, long maxBytes, File diskDirectory, long maxDiskBytes, Consumer<String> onLoaded) {
+        this.size = size;
+        this.maxBytes = maxBytes;
+        this.diskDirectory = diskDirectory;
+        this.maxDiskBytes = maxDiskBytes;
+        this.onLoaded = onLoaded;
+        if (diskDirectory != null) {
+            diskDirectory.mkdirs();
+            // Thumbnails left by earlier runs are pruned off the EDT, while the first ones load
+            Thread pruner = new Thread(this::pruneDisk, "thumbnail-prune");
+            pruner.setDaemon(true);
+            pruner.setPriority(Thread.MIN_PRIORITY);
+            pruner.start();
+        }
+
+        // Newest requests first: while scrolling, rows that just became visible matter more
+        // than rows that were requested on the way and have already scrolled out
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "thumbnail-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+    }
+
+    /**
+     * Returns the cached thumbnail, or null after queueing it for generation
+     */
+    BufferedImage get(String path) {
+        synchronized (this) {
+            BufferedImage thumbnail = thumbnails.get(path);
+            if (thumbnail != null) {
+                return thumbnail;
+            }
+        }
+        if (!failed.contains(path) && !loading.containsKey(path)) {
+            LoadTask task = new LoadTask(path, sequence.incrementAndGet());
+            if (loading.putIfAbsent(path, task) == null) {
+                executor.execute(task);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Drops queued loads of every path not in the given ones, typically the rows that are visible.
+     * Loads already running finish; dropped paths are queued again when next requested.
+     */
+    void cancelLoadsExcept(Collection<String> paths) {
+        for (LoadTask task : loading.values()) {
+            if (!paths.contains(task.path) && executor.remove(task)) {
+                loading.remove(task.path, task);
+            }
+        }
+    }
+
+    /**
+     * Stops generating thumbnails; cached ones stay on disk
+     */
+    void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Generation request, ordered newest first
+     */
+    private final class LoadTask implements Runnable, Comparable<LoadTask> {
+        private final String path;
+        private final long order;
+
+        LoadTask(String path, long order) {
+            this.path = path;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(LoadTask other) {
+            return Long.compare(other.order, order);
+        }
+
+        @Override
+        public void run() {
+            try {
+                BufferedImage thumbnail = load(path);
+                if (thumbnail == null) {
+                    failed.add(path);
+                    return;
+                }
+                put(path, thumbnail);
+                onLoaded.accept(path);
+            } catch (IOException | RuntimeException e) {
+                failed.add(path);
+            } finally {
+                loading.remove(path, this);
+            }
+        }
+    }
+
+    private synchronized void put(String path, BufferedImage thumbnail) {
+        BufferedImage previous = thumbnails.put(path, thumbnail);
+        if (previous != null) {
+            totalBytes -= bytesOf(previous);
+        }
+        totalBytes += bytesOf(thumbnail);
+
+        Iterator<Map.Entry<String, BufferedImage>> eldest = thumbnails.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            totalBytes -= bytesOf(eldest.next().getValue());
+            eldest.remove();
+        }
+    }
+
+    private static long bytesOf(BufferedImage image) {
+        return (long) image.getWidth() * image.getHeight() * 4;
+    }
+
+    private BufferedImage load(String path) throws IOException {
+        File source = new File(path);
+        File cached = diskDirectory != null ? new File(diskDirectory, diskKey(source) + ".png") : null;
+        if (cached != null && cached.isFile()) {
+            BufferedImage thumbnail;
+            try {
+                thumbnail = ImageIO.read(cached);
+            } catch (IOException e) {
+                // Pruned while being read, or damaged; generate it again
+                thumbnail = null;
+            }
+            if (thumbnail != null) {
+                // The modification time orders thumbnails for pruning, least recently used first
+                cached.setLastModified(System.currentTimeMillis());
+                return thumbnail;
+            }
+        }
+
+        BufferedImage thumbnail = generate(source);
+        if (thumbnail != null && cached != null) {
+            // Written under a temporary name so a concurrent reader never sees a partial PNG
+            File partial = new File(diskDirectory, cached.getName() + ".tmp" + Thread.currentThread().getId());
+            if (ImageIO.write(thumbnail, "png", partial)) {
+                Files.move(partial.toPath(), cached.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                if (diskBytes.addAndGet(cached.length()) > maxDiskBytes) {
+                    pruneDisk();
+                }
+            } else {
+                partial.delete();
+            }
+        }
+        return thumbnail;
+    }
+
+    /**
+     * Deletes expired thumbnails and abandoned partial writes, then the least recently used
+     * thumbnails until the directory is down to three quarters of its limit, so that the next
+     * prune is not due after a single write
+     */
+    private void pruneDisk() {
+        synchronized (diskLock) {
+            File[] files = diskDirectory.listFiles();
+            if (files == null) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            long expired = now - TimeUnit.DAYS.toMillis(DISK_MAX_AGE_DAYS);
+            // Read once: loads touch files while this runs, and the sort needs stable keys
+            Map<File, Long> lastUsed = new HashMap<>();
+            long total = 0;
+            for (File file : files) {
+                long modified = file.lastModified();
+                boolean thumbnail = file.getName().endsWith(".png");
+                if (thumbnail ? modified < expired : modified < now - PARTIAL_MAX_AGE_MILLIS) {
+                    file.delete();
+                } else if (thumbnail) {
+                    lastUsed.put(file, modified);
+                    total += file.length();
+                }
+            }
+
+            if (total > maxDiskBytes) {
+                List<File> oldestFirst = new ArrayList<>(lastUsed.keySet());
+                oldestFirst.sort(Comparator.comparing(lastUsed::get));
+                for (File file : oldestFirst) {
+                    if (total <= maxDiskBytes / 4 * 3) {
+                        break;
+                    }
+                    long length = file.length();
+                    if (file.delete()) {
+                        total -= length;
+                    }
+                }
+            }
+            diskBytes.set(total);
+        }
+    }
+
+    /**
+     * Decodes only every n-th pixel of the source, then scales the small result to the thumbnail size
+     */
+    private BufferedImage generate(File source) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(source)) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                int factor = Math.max(1, Math.min(width, height) / size);
+                if (factor > 1) {
+                    param.setSourceSubsampling(factor, factor, 0, 0);
+                }
+                BufferedImage decoded = reader.read(0, param);
+
+                float scale = Math.min(1f, (float) size / Math.max(decoded.getWidth(), decoded.getHeight()));
+                int thumbWidth = Math.max(1, Math.round(decoded.getWidth() * scale));
+                int thumbHeight = Math.max(1, Math.round(decoded.getHeight() * scale));
+                BufferedImage thumbnail = new BufferedImage(thumbWidth, thumbHeight, BufferedImage.TYPE_INT_ARGB);
+                Graphics2D g = thumbnail.createGraphics();
+                try {
+                    g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                    g.drawImage(decoded, 0, 0, thumbWidth, thumbHeight, null);
+                } finally {
+                    g.dispose();
+                }
+                return thumbnail;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Changes whenever the file is replaced or edited, so stale thumbnails are never served
+     */
+    private String diskKey(File source) {
+        String identity = source.getAbsolutePath() + '\n' + source.lastModified() + '\n' + source.length() + '\n' + size;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest(identity.getBytes(StandardCharsets.UTF_8))) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ConversionJobServletTest {
+
+    private static final long SIZE = 1000;
+    private static final long[] WHOLE_FILE = new long[0];
+
+    @Test
+    void satisfiableRanges() {
+        assertRange(new long[]{0, 99}, "bytes=0-99");
+        assertRange(new long[]{500, 999}, "bytes=500-");
+        assertRange(new long[]{900, 999}, "bytes=-100");
+        assertRange(new long[]{999, 999}, "bytes=999-999");
+        // Ends past the file and suffixes longer than it are cut to the file
+        assertRange(new long[]{500, 999}, "bytes=500-5000");
+        assertRange(new long[]{0, 999}, "bytes=-5000");
+        assertRange(new long[]{5, 9}, "bytes= 5-9 ");
+    }
+
+    @Test
+    void invalidRangesAreIgnored() {
+        assertRange(WHOLE_FILE, "bytes=5-3");
+        assertRange(WHOLE_FILE, "bytes=5000-3");
+        assertRange(WHOLE_FILE, "bytes=--5");
+        assertRange(WHOLE_FILE, "bytes=5--3");
+        assertRange(WHOLE_FILE, "bytes=-");
+        assertRange(WHOLE_FILE, "bytes=abc-def");
+        assertRange(WHOLE_FILE, "bytes=5");
+        assertRange(WHOLE_FILE, "bytes=0-1,5-9");
+        assertRange(WHOLE_FILE, "items=0-9");
+    }
+
+    @Test
+    void unsatisfiableRanges() {
+        assertNull(ConversionJobServlet.parseRange("bytes=1000-", SIZE));
+        assertNull(ConversionJobServlet.parseRange("bytes=1000-2000", SIZE));
+        assertNull(ConversionJobServlet.parseRange("bytes=-0", SIZE));
+        assertNull(ConversionJobServlet.parseRange("bytes=0-", 0));
+        assertNull(ConversionJobServlet.parseRange("bytes=-10", 0));
+    }
+
+    private static void assertRange(long[] expected, String header) {
+        assertArrayEquals(expected, ConversionJobServlet.parseRange(header, SIZE), header);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSObjectKey;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ImageToPDFServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Workers hash files in any order, so a later copy of an image can claim its content hash before
+     * the first page does. Every page must still get the image, embedded once.
+     */
+    @Test
+    void identicalImagesShareOneXObjectWhateverOrderWorkersFinish() throws IOException {
+        Path original = tempDir.resolve("page.png");
+        // Alpha keeps the PNG off the passthrough path, so preparing it takes long enough to race
+        BufferedImage image = new BufferedImage(400, 300, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(new Color(30, 120, 200, 180));
+        g.fillRect(20, 20, 300, 200);
+        g.dispose();
+        ImageIO.write(image, "png", original.toFile());
+
+        List<String> imagePaths = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Path copy = tempDir.resolve("copy-" + i + ".png");
+            Files.copy(original, copy);
+            imagePaths.add(copy.toString());
+        }
+
+        ConversionOptions options = new ConversionOptions().setParallelism(8).setReadAhead(16);
+        ImageToPDFService service = new ImageToPDFService();
+        for (int run = 0; run < 25; run++) {
+            File output = tempDir.resolve("out-" + run + ".pdf").toFile();
+            ConversionReport report = service.convertImagesToPDF(imagePaths, output.getPath(), options);
+            assertEquals(40, report.getEntries().size());
+            assertEquals(39, report.getReusedImages().size());
+
+            try (PDDocument document = Loader.loadPDF(output)) {
+                assertEquals(40, document.getNumberOfPages());
+                Set<COSObjectKey> images = new HashSet<>();
+                for (PDPage page : document.getPages()) {
+                    for (COSName name : page.getResources().getXObjectNames()) {
+                        COSObject reference = (COSObject) page.getResources().getCOSObject()
+                                .getCOSDictionary(COSName.XOBJECT).getItem(name);
+                        images.add(reference.getKey());
+                    }
+                }
+                assertEquals(1, images.size());
+            }
+        }
+    }
+
+    @Test
+    void failedConversionLeavesNoOutputFile() throws IOException {
+        Path valid = tempDir.resolve("valid.png");
+        BufferedImage image = new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB);
+        ImageIO.write(image, "png", valid.toFile());
+        byte[] bytes = Files.readAllBytes(valid);
+        Path truncated = tempDir.resolve("truncated.png");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length / 2));
+
+        File output = tempDir.resolve("partial.pdf").toFile();
+        assertThrows(IOException.class, () -> new ImageToPDFService().convertImagesToPDF(
+                Arrays.asList(valid.toString(), truncated.toString()), output.getPath()));
+        assertFalse(output.exists());
+        assertFalse(tempDir.resolve(".partial.pdf.part").toFile().exists());
+    }
+}
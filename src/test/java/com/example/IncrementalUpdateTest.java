@@ -0,0 +1,84 @@
+package com.example;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IncrementalUpdateTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void appendedPagesAndRotationLeaveTheOriginalBytesInPlace() throws IOException {
+        Path pdf = tempDir.resolve("document.pdf");
+        new ImageToPDFService().convertImagesToPDF(
+                Arrays.asList(image("first", Color.RED), image("second", Color.GREEN)), pdf.toString());
+        byte[] original = Files.readAllBytes(pdf);
+
+        // A small budget sends the new image streams to a scratch file until they are written
+        ConversionOptions options = new ConversionOptions().setMemoryBudget(64 * 1024)
+                .setScratchDirectory(tempDir.toFile());
+        List<String> appended = Arrays.asList(image("third", Color.BLUE), image("fourth", Color.ORANGE));
+        ConversionReport report = new ImageToPDFService().appendImagesToPDF(appended, pdf.toString(), options,
+                null, null);
+        assertEquals(2, report.getEntries().size());
+        byte[] afterAppend = Files.readAllBytes(pdf);
+        assertPrefix(original, afterAppend);
+
+        assertEquals(2, new PDFRotateService().rotatePages(pdf.toString(), "2, 4", 90));
+        byte[] afterRotate = Files.readAllBytes(pdf);
+        assertPrefix(afterAppend, afterRotate);
+
+        try (PDDocument document = Loader.loadPDF(pdf.toFile())) {
+            assertEquals(4, document.getNumberOfPages());
+            int[] rotations = {0, 90, 0, 90};
+            for (int i = 0; i < rotations.length; i++) {
+                assertEquals(rotations[i], document.getPage(i).getRotation());
+                assertEquals(1, count(document.getPage(i).getResources().getXObjectNames()));
+            }
+        }
+    }
+
+    private String image(String name, Color color) throws IOException {
+        BufferedImage image = new BufferedImage(300, 200, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, 300, 200);
+        g.setColor(Color.WHITE);
+        g.drawString(name, 20, 100);
+        g.dispose();
+        File file = tempDir.resolve(name + ".png").toFile();
+        ImageIO.write(image, "png", file);
+        return file.getPath();
+    }
+
+    private static void assertPrefix(byte[] prefix, byte[] bytes) {
+        assertTrue(bytes.length > prefix.length, "nothing was appended");
+        assertArrayEquals(prefix, Arrays.copyOf(bytes, prefix.length));
+    }
+
+    private static int count(Iterable<?> items) {
+        int count = 0;
+        for (Object ignored : items) {
+            count++;
+        }
+        return count;
+    }
+}
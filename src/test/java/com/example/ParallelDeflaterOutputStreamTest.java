@@ -0,0 +1,173 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelDeflaterOutputStreamTest {
+
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    @Test
+    void emptyInputIsAValidStream() throws Exception {
+        byte[] compressed = compress(new byte[0], Deflater.DEFAULT_COMPRESSION);
+        assertArrayEquals(new byte[0], inflate(compressed));
+        assertTrailer(new byte[0], compressed);
+    }
+
+    @Test
+    void inputOfExactlyOneChunkAndOneByteMore() throws Exception {
+        byte[] data = mixed(CHUNK_SIZE + 1);
+        byte[] oneChunk = Arrays.copyOf(data, CHUNK_SIZE);
+        assertRoundTrip(oneChunk, Deflater.DEFAULT_COMPRESSION);
+        assertRoundTrip(data, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    @Test
+    void chunksCompressedOnThePoolJoinIntoOneStream() throws Exception {
+        // More chunks than the stream keeps in flight, ending in a partial one
+        byte[] data = mixed(9 * CHUNK_SIZE + 12345);
+        for (int level : new int[]{0, 1, 6, 9}) {
+            assertRoundTrip(data, level);
+        }
+    }
+
+    @Test
+    void levelZeroStoresTheData() throws Exception {
+        byte[] data = mixed(3 * CHUNK_SIZE);
+        byte[] compressed = assertRoundTrip(data, 0);
+        assertTrue(compressed.length >= data.length);
+    }
+
+    @Test
+    void headerAnnouncesTheLevel() throws Exception {
+        int[] levels = {0, 1, 2, 5, 6, Deflater.DEFAULT_COMPRESSION, 7, 9};
+        int[] flags = {0, 0, 1, 1, 2, 2, 3, 3};
+        for (int i = 0; i < levels.length; i++) {
+            byte[] compressed = compress(new byte[0], levels[i]);
+            int cmf = compressed[0] & 0xFF;
+            int flg = compressed[1] & 0xFF;
+            assertEquals(0x78, cmf);
+            assertEquals(0, (cmf << 8 | flg) % 31);
+            assertEquals(0, flg & 0x20, "no preset dictionary");
+            assertEquals(flags[i], flg >> 6);
+        }
+    }
+
+    @Test
+    void eachChunkIsPrimedWithTheEndOfThePreviousOne() throws Exception {
+        // A 20 KB random block repeated: each chunk starts with data its dictionary already holds, so
+        // the result matches a single stream. Unprimed chunks would each store the block again.
+        byte[] block = new byte[20 * 1024];
+        new Random(7).nextBytes(block);
+        byte[] data = new byte[4 * CHUNK_SIZE];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = block[i % block.length];
+        }
+        byte[] compressed = assertRoundTrip(data, Deflater.DEFAULT_COMPRESSION);
+
+        Deflater single = new Deflater();
+        long singleLength;
+        try {
+            single.setInput(data);
+            single.finish();
+            byte[] buffer = new byte[64 * 1024];
+            while (!single.finished()) {
+                single.deflate(buffer);
+            }
+            singleLength = single.getBytesWritten();
+        } finally {
+            single.end();
+        }
+        assertTrue(compressed.length < singleLength * 101 / 100 + 64,
+                "compressed to " + compressed.length + ", a single stream to " + singleLength);
+    }
+
+    @Test
+    void singleByteWritesMatchBulkWrites() throws Exception {
+        byte[] data = mixed(5000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ParallelDeflaterOutputStream deflater = new ParallelDeflaterOutputStream(out, 6);
+        for (byte b : data) {
+            deflater.write(b);
+        }
+        deflater.close();
+        assertArrayEquals(data, inflate(out.toByteArray()));
+        assertTrailer(data, out.toByteArray());
+    }
+
+    private static byte[] assertRoundTrip(byte[] data, int level) throws Exception {
+        byte[] compressed = compress(data, level);
+        assertArrayEquals(data, inflate(compressed), "level " + level);
+        assertTrailer(data, compressed);
+        return compressed;
+    }
+
+    /**
+     * Writes in uneven pieces, so chunk boundaries fall inside writes
+     */
+    private static byte[] compress(byte[] data, int level) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ParallelDeflaterOutputStream deflater = new ParallelDeflaterOutputStream(out, level);
+        for (int offset = 0; offset < data.length; offset += 100_003) {
+            deflater.write(data, offset, Math.min(100_003, data.length - offset));
+        }
+        deflater.finish();
+        return out.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] compressed) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[64 * 1024];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && !inflater.finished()) {
+                    assertTrue(!inflater.needsInput() && !inflater.needsDictionary(), "stream ended early");
+                }
+                out.write(buffer, 0, count);
+            }
+            assertEquals(0, inflater.getRemaining(), "bytes after the end of the stream");
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void assertTrailer(byte[] data, byte[] compressed) {
+        Adler32 adler = new Adler32();
+        adler.update(data);
+        long expected = adler.getValue();
+        int end = compressed.length;
+        long actual = (compressed[end - 4] & 0xFFL) << 24 | (compressed[end - 3] & 0xFFL) << 16
+                | (compressed[end - 2] & 0xFFL) << 8 | compressed[end - 1] & 0xFFL;
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * Random bytes alternating with repetitive runs, so both stored and compressed blocks appear
+     */
+    private static byte[] mixed(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        for (int i = 0; i < length; i++) {
+            if ((i / 50_000) % 2 == 0) {
+                data[i] = (byte) (i % 97);
+            }
+        }
+        return data;
+    }
+}